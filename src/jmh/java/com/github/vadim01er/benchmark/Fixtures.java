@@ -0,0 +1,48 @@
+package com.github.vadim01er.benchmark;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+final class Fixtures {
+
+    private static final String[] FIRST = {"Ivan", "Anna", "Pavel", "Maria", "Oleg", "Elena", "Sergey", "Olga",
+            "Dmitry", "Irina", "Alexey", "Natalia", "Vadim", "Tatiana", "Nikolay", "Svetlana"};
+    private static final String[] LAST = {"Ivanov", "Smirnov", "Kuznetsov", "Popov", "Vasiliev", "Petrov",
+            "Sokolov", "Mikhailov", "Novikov", "Fedorov", "Morozov", "Volkov", "Alekseev", "Lebedev"};
+
+    private Fixtures() {
+    }
+
+    static List<User> users(int count, int phonesPerUser) {
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>(count);
+        long phoneId = 1;
+        for (long id = 1; id <= count; id++) {
+            User user = new User(name(random) + ' ' + id);
+            user.setId(id);
+            for (int i = 0; i < phonesPerUser; i++) {
+                Phone phone = new Phone();
+                phone.setId(phoneId++);
+                phone.setName("mobile " + i);
+                phone.setNumber(number(random));
+                phone.setUser(user);
+                user.getPhone().add(phone);
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    static String name(Random random) {
+        return FIRST[random.nextInt(FIRST.length)] + ' ' + LAST[random.nextInt(LAST.length)];
+    }
+
+    static String number(Random random) {
+        return String.format("+7(9%02d)%03d-%02d-%02d", random.nextInt(100), random.nextInt(1000),
+                random.nextInt(100), random.nextInt(100));
+    }
+}
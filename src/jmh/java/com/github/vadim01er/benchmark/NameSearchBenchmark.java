@@ -0,0 +1,65 @@
+package com.github.vadim01er.benchmark;
+
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.search.TrigramNameSearch;
+import com.github.vadim01er.sharding.ShardMap;
+import com.github.vadim01er.sharding.ShardRouter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NameSearchBenchmark {
+
+    @Param({"10000", "100000"})
+    private int users;
+
+    @Param({"petrov 12", "olga"})
+    private String query;
+
+    private List<User> all;
+    private TrigramNameSearch index;
+
+    @Setup
+    public void setup() {
+        all = Fixtures.users(users, 0);
+        Map<Object, User> byId = all.stream().collect(Collectors.toMap(User::getId, Function.identity()));
+        UserRepo userRepo = (UserRepo) Proxy.newProxyInstance(UserRepo.class.getClassLoader(),
+                new Class<?>[]{UserRepo.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findAllById")) {
+                        List<User> found = new ArrayList<>();
+                        for (Object id : (Iterable<?>) args[0]) {
+                            found.add(byId.get(id));
+                        }
+                        return found;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        index = new TrigramNameSearch(userRepo, new ShardRouter(
+                new DefaultListableBeanFactory().getBeanProvider(ShardMap.class), null, null, 1));
+        all.forEach(user -> index.index(user.getId(), user.getName()));
+    }
+
+    @Benchmark
+    public List<User> regexScan() {
+        Pattern pattern = Pattern.compile(".*" + query + ".*");
+        return all.stream().filter(user -> pattern.matcher(user.getName()).find()).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<User> trigramIndex() {
+        return index.search(query, false, 0, 100);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.vadim01er.benchmark;
+
+import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.service.PhoneNumberNormalizer;
+import com.github.vadim01er.validation.PhoneNumberFormat;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PhoneValidationBenchmark {
+
+    private static final Pattern PATTERN =
+            Pattern.compile("^\\+?([0-9])?\\(?[0-9]{3}\\)?[0-9]{3}\\-?[0-9]{2}\\-?[0-9]{2}$");
+
+    @Param({"+7(999)123-45-67", "79991234567", "999123-4567", "12-34"})
+    private String number;
+
+    private final PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer("7", "8");
+
+    private Validator validator;
+    private PhoneDTO dto;
+
+    @Setup
+    public void setup() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        dto = new PhoneDTO("mobile", number);
+    }
+
+    @Benchmark
+    public boolean regex() {
+        return PATTERN.matcher(number).matches();
+    }
+
+    @Benchmark
+    public long parser() {
+        return PhoneNumberFormat.parse(number);
+    }
+
+    @Benchmark
+    public Long normalize() {
+        return normalizer.normalize(number);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PhoneDTO>> beanValidation() {
+        return validator.validate(dto);
+    }
+}
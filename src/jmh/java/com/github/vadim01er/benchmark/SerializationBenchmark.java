@@ -0,0 +1,87 @@
+package com.github.vadim01er.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.json.ListJsonResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialize time per response format; the encoded and gzipped sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private ListJsonResponse users;
+    private ListJsonResponse phones;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper(factory(format));
+        List<User> all = Fixtures.users(size, 2);
+        List<Phone> allPhones = all.stream()
+                .flatMap(user -> user.getPhone().stream())
+                .limit(size)
+                .collect(Collectors.toList());
+        users = new ListJsonResponse(all);
+        phones = new ListJsonResponse(allPhones);
+        System.out.printf("%n%s, %d rows: users %d bytes (gzip %d), phones %d bytes (gzip %d)%n", format, size,
+                users().length, usersGzip().length, phones().length, gzip(phones()).length);
+    }
+
+    @Benchmark
+    public byte[] users() throws IOException {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] phones() throws IOException {
+        return objectMapper.writeValueAsBytes(phones);
+    }
+
+    @Benchmark
+    public byte[] usersGzip() throws IOException {
+        return gzip(users());
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.vadim01er.benchmark;
+
+import com.github.vadim01er.Vadim01erApplication;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.entity.UserDTO;
+import com.github.vadim01er.entity.UserSummary;
+import com.github.vadim01er.service.PhoneService;
+import com.github.vadim01er.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceCrudBenchmark {
+
+    private static final int USERS = 1000;
+
+    /**
+     * Lookup cache TTL: with 0 nothing is cached and the finds measure the database round trip,
+     * otherwise they measure cache hits.
+     */
+    @Param({"0", "300000"})
+    public long cacheTtlMillis;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private PhoneService phoneService;
+    private final Random random = new Random(42);
+    private long[] userIds;
+    private String[] numbers;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(Vadim01erApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database=h2",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--phonebook.phone.backfill=false",
+                        "--phonebook.cache.ttl-millis=" + cacheTtlMillis,
+                        "--phonebook.cache.negative-ttl-millis=" + cacheTtlMillis,
+                        "--logging.level.root=warn");
+        userService = context.getBean(UserService.class);
+        phoneService = context.getBean(PhoneService.class);
+        userIds = new long[USERS];
+        numbers = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            User user = userService.addUser(Fixtures.name(random));
+            numbers[i] = Fixtures.number(random);
+            phoneService.addPhone(user, new PhoneDTO("mobile", numbers[i]));
+            userIds[i] = user.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public User findUserById() {
+        return userService.findById(userIds[random.nextInt(USERS)]);
+    }
+
+    @Benchmark
+    public List<Phone> findPhoneByNumber() {
+        return phoneService.findByNumber(numbers[random.nextInt(USERS)]);
+    }
+
+    @Benchmark
+    public UserSummary replaceUser() {
+        return userService.replaceUser(userIds[random.nextInt(USERS)], new UserDTO(Fixtures.name(random)), null);
+    }
+
+    @Benchmark
+    public boolean addAndDeleteUser() {
+        User user = userService.addUser(Fixtures.name(random));
+        return userService.deleteById(user.getId());
+    }
+
+    @Benchmark
+    public boolean addAndDeletePhone() {
+        User user = userService.findById(userIds[random.nextInt(USERS)]);
+        Phone phone = phoneService.addPhone(user, new PhoneDTO("work", Fixtures.number(random)));
+        return phoneService.deleteById(phone.getId());
+    }
+}
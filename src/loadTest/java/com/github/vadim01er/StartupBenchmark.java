@@ -0,0 +1,79 @@
+package com.github.vadim01er;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boots the application {@code runs} times with the given command line and prints, per run and as min / median /
+ * max, how long after launch {@code readyUrl} first answered 200 (readiness, i.e. after the warm-up) and how long
+ * the first request to {@code requestUrl} then took.
+ */
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_NANOS = Duration.ofMinutes(3).toNanos();
+    private static final long POLL_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("usage: StartupBenchmark readyUrl requestUrl runs command...");
+            System.exit(2);
+        }
+        URI readyUri = URI.create(args[0]);
+        URI requestUri = URI.create(args[1]);
+        int runs = Integer.parseInt(args[2]);
+        List<String> command = Arrays.asList(args).subList(3, args.length);
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        long[] ready = new long[runs];
+        long[] first = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try {
+                long start = System.nanoTime();
+                while (status(client, readyUri) != 200) {
+                    if (!process.isAlive() || System.nanoTime() - start > TIMEOUT_NANOS) {
+                        throw new IllegalStateException("Application did not become ready: " + command);
+                    }
+                    Thread.sleep(POLL_MILLIS);
+                }
+                ready[run] = System.nanoTime() - start;
+                long sent = System.nanoTime();
+                int status = status(client, requestUri);
+                first[run] = System.nanoTime() - sent;
+                System.out.printf("run=%d ready=%d ms firstRequest=%d ms status=%d%n",
+                        run + 1, ready[run] / 1_000_000, first[run] / 1_000_000, status);
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        System.out.printf("ready %s%nfirstRequest %s%n", summary(ready), summary(first));
+    }
+
+    private static int status(HttpClient client, URI uri) throws InterruptedException {
+        try {
+            return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding())
+                    .statusCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String summary(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("min=%d ms median=%d ms max=%d ms", sorted[0] / 1_000_000,
+                sorted[sorted.length / 2] / 1_000_000, sorted[sorted.length - 1] / 1_000_000);
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.vadim01er.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CacheStats {
+    private int size;
+    private long hits;
+    private long sharedHits;
+    private long misses;
+    private long coalesced;
+    private long evictions;
+    private long conditionalHits;
+    private long conditionalMisses;
+}
@@ -0,0 +1,46 @@
+package com.github.vadim01er.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-local stand-in for a store shared between application nodes,
+ * used where no external store is configured (tests, single-node setups).
+ */
+public class LocalSharedStore implements SharedStore {
+
+    private final Map<String, Expiring> values = new ConcurrentHashMap<>();
+
+    @Override
+    public Object get(String key) {
+        Expiring expiring = values.get(key);
+        if (expiring == null) {
+            return null;
+        }
+        if (expiring.expiresAt < System.currentTimeMillis()) {
+            values.remove(key, expiring);
+            return null;
+        }
+        return expiring.value;
+    }
+
+    @Override
+    public void put(String key, Object value, long ttlMillis) {
+        values.put(key, new Expiring(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    @Override
+    public void evict(String key) {
+        values.remove(key);
+    }
+
+    private static final class Expiring {
+        private final Object value;
+        private final long expiresAt;
+
+        private Expiring(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
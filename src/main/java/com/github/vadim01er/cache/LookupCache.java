@@ -0,0 +1,324 @@
+package com.github.vadim01er.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded LRU read-through cache with per-entry TTL.
+ * Values matching {@code negative} (not-found results) are kept for the shorter negative TTL and only locally;
+ * positive values are also published to the {@link SharedStore} so that other nodes can pick them up.
+ * Concurrent misses for the same key share one load. Evicting a key detaches its load in flight, which then
+ * neither stores its value nor is joined by later callers, so a caller never receives a value older than its own
+ * call; loads of other keys are unaffected. Batch loads ({@link #getAll}) register every key before their query and
+ * are detached key by key the same way.
+ * Values are kept as copies made by {@code copy} and every caller gets a copy of its own, so loaded entities are
+ * neither shared between threads nor tied to the session that loaded them.
+ */
+public class LookupCache<K, V> {
+
+    private final String name;
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Predicate<V> negative;
+    private final UnaryOperator<V> copy;
+    private final SharedStore sharedStore;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder conditionalHits = new LongAdder();
+    private final LongAdder conditionalMisses = new LongAdder();
+
+    public LookupCache(String name, int maximumSize, long ttlMillis, long negativeTtlMillis,
+                       Predicate<V> negative, UnaryOperator<V> copy, SharedStore sharedStore) {
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.negativeTtlNanos = negativeTtlMillis * 1_000_000;
+        this.negative = negative;
+        this.copy = copy;
+        this.sharedStore = sharedStore;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        Entry<V> entry = fresh(key, System.nanoTime());
+        if (entry != null) {
+            return copyOf(entry.value);
+        }
+        Flight<V> flight = new Flight<>();
+        Flight<V> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            return copyOf(leader.await());
+        }
+        try {
+            V value = load(key, loader, flight);
+            flight.result.complete(value);
+            return copyOf(value);
+        } catch (RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Batch form of {@link #get}: the keys that are neither cached nor being loaded are registered as loads in flight
+     * and then loaded with one call of {@code loader}, so that an eviction during the batch query detaches them just
+     * like single loads. Keys other callers are loading are waited for; keys missing from the loader's map are
+     * not found.
+     *
+     * @return the value of every key, {@code null} where there is none
+     */
+    public Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        long now = System.nanoTime();
+        Map<K, V> found = new HashMap<>();
+        Map<K, Flight<V>> joined = new LinkedHashMap<>();
+        Map<K, Flight<V>> owned = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (found.containsKey(key) || joined.containsKey(key) || owned.containsKey(key)) {
+                continue;
+            }
+            Entry<V> entry = fresh(key, now);
+            if (entry != null) {
+                found.put(key, copyOf(entry.value));
+                continue;
+            }
+            Flight<V> flight = new Flight<>();
+            Flight<V> leader = inFlight.putIfAbsent(key, flight);
+            if (leader != null) {
+                coalesced.increment();
+                joined.put(key, leader);
+            } else {
+                owned.put(key, flight);
+            }
+        }
+        if (!owned.isEmpty()) {
+            try {
+                found.putAll(loadAll(owned, loader));
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(flight -> flight.result.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+        joined.forEach((key, flight) -> found.put(key, copyOf(flight.await())));
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<K, V> loadAll(Map<K, Flight<V>> owned, Function<List<K>, Map<K, V>> loader) {
+        Map<K, V> found = new HashMap<>();
+        List<K> toLoad = new ArrayList<>();
+        owned.forEach((key, flight) -> {
+            V shared = (V) sharedStore.get(sharedKey(key));
+            if (shared != null) {
+                sharedHits.increment();
+                store(key, shared, flight);
+                flight.result.complete(shared);
+                found.put(key, copyOf(shared));
+            } else {
+                toLoad.add(key);
+            }
+        });
+        if (toLoad.isEmpty()) {
+            return found;
+        }
+        misses.add(toLoad.size());
+        Map<K, V> loaded = loader.apply(toLoad);
+        for (K key : toLoad) {
+            Flight<V> flight = owned.get(key);
+            V value = copyOf(loaded.get(key));
+            if (store(key, value, flight) && !isNegative(value)) {
+                sharedStore.put(sharedKey(key), value, ttlNanos / 1_000_000);
+            }
+            flight.result.complete(value);
+            found.put(key, copyOf(value));
+        }
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V load(K key, Function<K, V> loader, Flight<V> flight) {
+        V shared = (V) sharedStore.get(sharedKey(key));
+        if (shared != null) {
+            sharedHits.increment();
+            store(key, shared, flight);
+            return shared;
+        }
+        misses.increment();
+        V value = copyOf(loader.apply(key));
+        if (store(key, value, flight) && !isNegative(value)) {
+            sharedStore.put(sharedKey(key), value, ttlNanos / 1_000_000);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the locally cached value without loading it, or {@code null} if absent or expired.
+     */
+    public V peek(K key) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt - now > 0) {
+                hits.increment();
+                return copyOf(entry.value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads {@code read} off the locally cached value without loading or copying it, for conditional request checks.
+     * Counted apart from lookups, so that revalidations do not inflate the hit ratio.
+     *
+     * @return what {@code read} returned, or {@code null} if the value is absent or expired
+     */
+    public <R> R probe(K key, Function<V, R> read) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt - now > 0 && entry.value != null) {
+                conditionalHits.increment();
+                return read.apply(entry.value);
+            }
+        }
+        conditionalMisses.increment();
+        return null;
+    }
+
+    public void evict(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            Flight<V> flight = inFlight.remove(key);
+            if (flight != null) {
+                flight.stale = true;
+            }
+        }
+        sharedStore.evict(sharedKey(key));
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            inFlight.values().forEach(flight -> flight.stale = true);
+            inFlight.clear();
+        }
+    }
+
+    public CacheStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(size, hits.sum(), sharedHits.sum(), misses.sum(), coalesced.sum(), evictions.sum(),
+                conditionalHits.sum(), conditionalMisses.sum());
+    }
+
+    /**
+     * @return the unexpired entry of the key, counted as a hit, or {@code null}
+     */
+    private Entry<V> fresh(K key, long now) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - now > 0) {
+                    hits.increment();
+                    return entry;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        return null;
+    }
+
+    private boolean store(K key, V value, Flight<V> flight) {
+        long ttl = isNegative(value) ? negativeTtlNanos : ttlNanos;
+        if (ttl <= 0) {
+            return false;
+        }
+        synchronized (entries) {
+            if (flight.stale) {
+                return false;
+            }
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttl));
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maximumSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return true;
+    }
+
+    private V copyOf(V value) {
+        return value == null ? null : copy.apply(value);
+    }
+
+    private boolean isNegative(V value) {
+        return value == null || negative.test(value);
+    }
+
+    private String sharedKey(K key) {
+        return name + ':' + key;
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        /**
+         * Set under the entries lock once the key was evicted during the load.
+         */
+        private boolean stale;
+
+        private V await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.vadim01er.cache;
+
+public class NoSharedStore implements SharedStore {
+
+    @Override
+    public Object get(String key) {
+        return null;
+    }
+
+    @Override
+    public void put(String key, Object value, long ttlMillis) {
+    }
+
+    @Override
+    public void evict(String key) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.vadim01er.cache;
+
+public interface SharedStore {
+
+    Object get(String key);
+
+    void put(String key, Object value, long ttlMillis);
+
+    void evict(String key);
+}
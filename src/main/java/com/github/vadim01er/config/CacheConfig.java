@@ -0,0 +1,63 @@
+package com.github.vadim01er.config;
+
+import com.github.vadim01er.cache.LocalSharedStore;
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.cache.NoSharedStore;
+import com.github.vadim01er.cache.SharedStore;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${phonebook.cache.maximum-size:10000}")
+    private int maximumSize;
+
+    @Value("${phonebook.cache.ttl-millis:300000}")
+    private long ttlMillis;
+
+    @Value("${phonebook.cache.negative-ttl-millis:30000}")
+    private long negativeTtlMillis;
+
+    @Bean
+    @ConditionalOnProperty(name = "phonebook.cache.shared", havingValue = "local")
+    public SharedStore localSharedStore() {
+        return new LocalSharedStore();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(SharedStore.class)
+    public SharedStore noSharedStore() {
+        return new NoSharedStore();
+    }
+
+    @Bean
+    public LookupCache<Long, User> userCache(SharedStore sharedStore) {
+        return new LookupCache<>("users", maximumSize, ttlMillis, 0, user -> false, User::copy,
+                sharedStore);
+    }
+
+    @Bean
+    public LookupCache<Long, Phone> phoneCache(SharedStore sharedStore) {
+        return new LookupCache<>("phones", maximumSize, ttlMillis, 0, phone -> false, Phone::copy,
+                sharedStore);
+    }
+
+    @Bean
+    public LookupCache<Long, List<Phone>> numberCache(SharedStore sharedStore) {
+        return new LookupCache<>("numbers", maximumSize, ttlMillis, negativeTtlMillis, List::isEmpty,
+                phones -> phones.stream()
+                        .map(Phone::copy)
+                        .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)),
+                sharedStore);
+    }
+}
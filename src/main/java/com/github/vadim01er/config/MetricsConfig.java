@@ -0,0 +1,28 @@
+package com.github.vadim01er.config;
+
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.metrics.CacheMetrics;
+import com.github.vadim01er.metrics.RepositoryMetricsPostProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static RepositoryMetricsPostProcessor repositoryMetricsPostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${phonebook.metrics.slow-query-millis:200}") long slowQueryMillis) {
+        return new RepositoryMetricsPostProcessor(meterRegistry, slowQueryMillis);
+    }
+
+    @Bean
+    public CacheMetrics cacheMetrics(List<LookupCache<?, ?>> caches) {
+        return new CacheMetrics(caches);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.vadim01er.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadim01er.filter.InternalRequests;
+import com.github.vadim01er.filter.RateLimitFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+@Configuration
+@ConditionalOnProperty(name = "phonebook.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    @Value("${phonebook.rate-limit.tokens-per-second:50}")
+    private double tokensPerSecond;
+
+    @Value("${phonebook.rate-limit.burst:200}")
+    private int burst;
+
+    @Value("${phonebook.rate-limit.max-clients:100000}")
+    private int maxClients;
+
+    @Value("${phonebook.rate-limit.api-keys:}")
+    private Set<String> apiKeys;
+
+    @Value("${phonebook.rate-limit.max-awaiting-connections:50}")
+    private int maxAwaitingConnections;
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(DataSource dataSource, ObjectMapper objectMapper,
+                                                                   InternalRequests internalRequests)
+            throws SQLException {
+        RateLimitFilter filter = new RateLimitFilter(tokensPerSecond, burst, maxClients, apiKeys,
+                internalRequests::isInternal, maxAwaitingConnections, awaitingConnections(dataSource), System::nanoTime, objectMapper);
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/users/*", "/phones/*", "/changes/*", "/export");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+    private static IntSupplier awaitingConnections(DataSource dataSource) throws SQLException {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            return () -> 0;
+        }
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        return () -> {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getThreadsAwaitingConnection();
+        };
+    }
+}
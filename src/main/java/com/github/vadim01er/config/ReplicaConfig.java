@@ -0,0 +1,64 @@
+package com.github.vadim01er.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single datasource with a primary plus read replicas when {@code phonebook.replicas.urls} is set.
+ * Replicas share the primary's driver, credentials and {@code spring.datasource.hikari.*} pool settings.
+ */
+@Configuration
+@ConditionalOnProperty(name = "phonebook.replicas.urls")
+public class ReplicaConfig {
+
+    private static final String HIKARI = "spring.datasource.hikari";
+
+    @Value("${phonebook.replicas.urls}")
+    private List<String> urls;
+
+    @Value("${phonebook.replicas.max-lag-millis:1000}")
+    private long maxLagMillis;
+
+    @Value("${phonebook.replicas.check-millis:1000}")
+    private long checkMillis;
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment) {
+        HikariDataSource primary = pool(properties, properties.determineUrl(), "primary", environment);
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            replicas.add(pool(properties, urls.get(i).trim(), "replica-" + i, environment));
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, maxLagMillis, checkMillis);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url, String name,
+                                         Environment environment) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind(HIKARI, Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.vadim01er.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Moves the pooled id sequences past ids issued by the former identity columns,
+ * so that PostgreSQL databases created before the switch to sequences keep inserting without collisions.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@DependsOn("entityManagerFactory")
+public class SequenceAlignment {
+
+    private static final String ALIGN = "SELECT setval('%1$s', (SELECT max(%3$s) FROM %2$s)) "
+            + "WHERE (SELECT last_value FROM %1$s) < (SELECT coalesce(max(%3$s), 0) FROM %2$s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+
+    @PostConstruct
+    public void align() {
+        try {
+            if (!databasePlatform.isPostgres()) {
+                return;
+            }
+            jdbcTemplate.queryForList(String.format(ALIGN, "users_seq", "users", "user_id"));
+            jdbcTemplate.queryForList(String.format(ALIGN, "phone_seq", "phone", "phone_id"));
+        } catch (DataAccessException e) {
+            log.warn("Could not align id sequences with existing rows", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.vadim01er.config;
+
+import com.github.vadim01er.sharding.ShardMap;
+import com.github.vadim01er.sharding.ShardRouter;
+import com.github.vadim01er.sharding.ShardRoutingDataSource;
+import com.github.vadim01er.sharding.ShardRoutingPostProcessor;
+import com.github.vadim01er.sharding.ShardSchema;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Spreads users and their phones over {@code spring.datasource.url} (shard 0) and the shards listed in
+ * {@code phonebook.shards.urls}. Shards share the primary's driver, credentials and {@code spring.datasource.hikari.*}
+ * pool settings. Not combinable with {@code phonebook.replicas.urls} or the embedded storage mode yet, which
+ * fails startup; the change feed ({@code /changes}) is unavailable, since its sequence numbers are per shard.
+ */
+@Configuration
+@ConditionalOnProperty(name = "phonebook.shards.urls")
+public class ShardingConfig {
+
+    private static final String HIKARI = "spring.datasource.hikari";
+
+    @Value("${phonebook.shards.urls}")
+    private List<String> urls;
+
+    @Value("${phonebook.shards.refresh-millis:1000}")
+    private long refreshMillis;
+
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    private String ddlAuto;
+
+    @Value("${phonebook.replicas.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${phonebook.storage.mode:jpa}")
+    private String storageMode;
+
+    @PostConstruct
+    public void checkCombination() {
+        if (!replicaUrls.isEmpty()) {
+            throw new IllegalStateException("phonebook.shards.urls cannot be combined with phonebook.replicas.urls");
+        }
+        if ("embedded".equals(storageMode)) {
+            throw new IllegalStateException("phonebook.shards.urls cannot be combined with "
+                    + "phonebook.storage.mode=embedded, which replays the single-database change feed");
+        }
+    }
+
+    @Bean
+    public static ShardRoutingPostProcessor shardRoutingPostProcessor(ObjectProvider<ShardRouter> shardRouter) {
+        return new ShardRoutingPostProcessor(shardRouter);
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, Environment environment) {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size() + 1);
+        shards.add(pool(properties, properties.determineUrl(), "shard-0", environment));
+        for (int i = 0; i < urls.size(); i++) {
+            shards.add(pool(properties, urls.get(i).trim(), "shard-" + (i + 1), environment));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardSchema shardSchema() {
+        return new ShardSchema();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardSchema shardSchema) {
+        IntegratorProvider integrators = () -> Collections.singletonList(shardSchema);
+        return hibernateProperties -> hibernateProperties.put("hibernate.integrator_provider", integrators);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ShardMap shardMap(ShardRoutingDataSource shardRoutingDataSource, ShardSchema shardSchema,
+                             EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        shardSchema.prepare(shardRoutingDataSource.size(), jdbcTemplate,
+                "update".equals(ddlAuto) || ddlAuto.startsWith("create"));
+        return new ShardMap(shardRoutingDataSource.size(), shardRoutingDataSource.shard(0), refreshMillis);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url, String name,
+                                         Environment environment) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind(HIKARI, Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
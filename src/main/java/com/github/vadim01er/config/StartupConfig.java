@@ -0,0 +1,20 @@
+package com.github.vadim01er.config;
+
+import com.github.vadim01er.storage.PhoneBookStore;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans kept eager under {@code spring.main.lazy-initialization}: sequence alignment must run before the first
+ * insert, and the storage engine recovers and starts following the change feed at startup rather than on the
+ * first request.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(SequenceAlignment.class, PhoneBookStore.class);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.vadim01er.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadim01er.filter.AdmissionFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat request handling and MVC async work on virtual threads when {@code phonebook.execution.mode=virtual}.
+ * The project targets Java 11, so the executor is looked up reflectively and the platform worker pool is kept
+ * on runtimes older than Java 21. Admission is bounded by the connection pool size either way: the size of the
+ * Hikari pool, or {@code phonebook.execution.pool-size} when the data source is a routing one (replicas, shards).
+ * Push subscribers ({@code /changes/events}) only count against it while they subscribe.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "phonebook.execution.mode", havingValue = "virtual")
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    private final Executor executor = newVirtualThreadExecutor();
+
+    @Value("${phonebook.execution.max-in-flight-per-connection:8}")
+    private int maxInFlightPerConnection;
+
+    @Value("${phonebook.execution.acquire-timeout-millis:100}")
+    private long acquireTimeoutMillis;
+
+    @Value("${phonebook.execution.pool-size:0}")
+    private int poolSize;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler() {
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    @Bean
+    public AdmissionFilter admissionFilter(DataSource dataSource, ObjectMapper objectMapper) throws SQLException {
+        int connections = poolSize;
+        if (connections <= 0) {
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                throw new IllegalStateException("Cannot tell the connection pool size of " + dataSource
+                        + ", set phonebook.execution.pool-size");
+            }
+            connections = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        }
+        return new AdmissionFilter(connections * maxInFlightPerConnection, acquireTimeoutMillis,
+                request -> request.getRequestURI().endsWith("/changes/events"), objectMapper);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (executor != null) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        }
+    }
+
+    private static Executor newVirtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads need Java 21 or newer, keeping the platform worker pool");
+            return null;
+        }
+    }
+}
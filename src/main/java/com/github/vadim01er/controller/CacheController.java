@@ -0,0 +1,30 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.cache.CacheStats;
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.json.JsonResponse;
+import com.github.vadim01er.json.ObjectJsonResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("/caches")
+@AllArgsConstructor
+public class CacheController {
+
+    private final List<LookupCache<?, ?>> caches;
+
+    @GetMapping()
+    public ResponseEntity<JsonResponse> getStats() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        caches.forEach(cache -> stats.put(cache.getName(), cache.stats()));
+        return ResponseEntity.ok().body(new ObjectJsonResponse(stats));
+    }
+}
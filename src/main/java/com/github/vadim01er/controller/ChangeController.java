@@ -0,0 +1,89 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.ChangeEntry;
+import com.github.vadim01er.json.JsonResponse;
+import com.github.vadim01er.json.NdJsonWriter;
+import com.github.vadim01er.json.PageJsonResponse;
+import com.github.vadim01er.push.ChangeBroadcaster;
+import com.github.vadim01er.service.ChangeService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static com.github.vadim01er.controller.Paging.MAX_PAGE_SIZE;
+import static com.github.vadim01er.controller.Paging.PAGE_SIZE;
+
+/**
+ * Incremental sync: {@code since} is the {@code next} token of the previous page (0 for a full sync).
+ * Unlike the other pages, {@code next} is always set so that clients can keep polling from it.
+ * {@code /events} pushes the same changes as they commit, without a {@code seq}: on a {@code resync} event
+ * (or a reconnect) clients catch up from their last token and subscribe again.
+ */
+@Validated
+@RestController
+@RequestMapping("/changes")
+@AllArgsConstructor
+public class ChangeController {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final ChangeService changeService;
+    private final NdJsonWriter ndJsonWriter;
+    private final ChangeBroadcaster changeBroadcaster;
+
+    @GetMapping()
+    public ResponseEntity<JsonResponse> getChanges(@Min(0) @RequestParam(value = "since", defaultValue = "0") long since,
+                                                   @Min(1) @Max(MAX_PAGE_SIZE)
+                                                   @RequestParam(value = "limit", defaultValue = PAGE_SIZE) int limit) {
+        List<ChangeEntry> page = changeService.findPage(since, limit);
+        long next = page.isEmpty() ? since : page.get(page.size() - 1).getSeq();
+        return ResponseEntity.ok()
+                .body(new PageJsonResponse(page, next));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamChanges(
+            @Min(0) @RequestParam(value = "since", defaultValue = "0") long since) {
+        changeService.checkAvailable();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndJsonWriter.<ChangeEntry>stream(consumer -> changeService.forEach(since, consumer)));
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(
+            @Pattern(regexp = "(?i)(user|phone)(,(user|phone))*")
+            @RequestParam(value = "types", defaultValue = "user,phone") String types) {
+        changeService.checkAvailable();
+        Set<Change.Type> subscribed = EnumSet.noneOf(Change.Type.class);
+        Arrays.stream(types.split(","))
+                .map(type -> Change.Type.valueOf(type.toUpperCase(Locale.ROOT)))
+                .forEach(subscribed::add);
+        SseEmitter emitter = changeBroadcaster.subscribe(subscribed);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.dedup.DuplicateJob;
+import com.github.vadim01er.json.DuplicateReport;
+import com.github.vadim01er.json.DuplicateStatus;
+import com.github.vadim01er.json.ExceptionResponse;
+import com.github.vadim01er.json.JsonResponse;
+import com.github.vadim01er.json.ObjectJsonResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/duplicates")
+@AllArgsConstructor
+public class DuplicateController {
+
+    private final DuplicateJob duplicateJob;
+
+    /**
+     * The last scan, listing at most {@code limit} clusters of each kind, largest first, and the last merge.
+     */
+    @GetMapping()
+    public ResponseEntity<JsonResponse> getStatus(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok().body(new ObjectJsonResponse(status(Math.max(0, limit))));
+    }
+
+    @PostMapping("/scan")
+    public ResponseEntity<JsonResponse> scan(@RequestParam(value = "merge", defaultValue = "false") boolean merge) {
+        if (!duplicateJob.startScan(merge)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ExceptionResponse(HttpStatus.CONFLICT,
+                    "A duplicate scan or merge is already running"));
+        }
+        return ResponseEntity.accepted().body(new ObjectJsonResponse(status(0)));
+    }
+
+    @PostMapping("/merge")
+    public ResponseEntity<JsonResponse> merge() {
+        if (duplicateJob.getReport() == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND,
+                    "No duplicate scan has finished yet"));
+        }
+        if (!duplicateJob.startMerge()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ExceptionResponse(HttpStatus.CONFLICT,
+                    "A duplicate scan or merge is already running"));
+        }
+        return ResponseEntity.accepted().body(new ObjectJsonResponse(status(0)));
+    }
+
+    private DuplicateStatus status(int limit) {
+        DuplicateReport report = duplicateJob.getReport();
+        return new DuplicateStatus(duplicateJob.isRunning(), report == null ? null : report.limit(limit),
+                duplicateJob.getMerge());
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.vadim01er.controller;
+
+import java.util.Arrays;
+
+final class Expand {
+
+    static final String PHONES = "phones";
+
+    private Expand() {
+    }
+
+    static boolean phones(String expand) {
+        return expand != null && Arrays.stream(expand.split(","))
+                .map(String::trim)
+                .anyMatch(PHONES::equalsIgnoreCase);
+    }
+}
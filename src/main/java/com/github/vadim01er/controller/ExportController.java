@@ -0,0 +1,79 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.export.ExportFormat;
+import com.github.vadim01er.export.PhoneBookExporter;
+import com.github.vadim01er.json.ExceptionResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/export")
+@AllArgsConstructor
+public class ExportController {
+
+    private static final String APPLICATION_GZIP = "application/gzip";
+    private static final int GZIP_BUFFER = 64 * 1024;
+
+    private final PhoneBookExporter phoneBookExporter;
+
+    /**
+     * Streams the whole phone book as a download. With {@code gzip=true} the file itself is gzipped, for jobs that
+     * store it as is; clients sending {@code Accept-Encoding: gzip} get the plain format compressed in transit.
+     */
+    @GetMapping()
+    public ResponseEntity<?> export(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                    @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().body(new ExceptionResponse(HttpStatus.BAD_REQUEST,
+                    "Unknown export format '" + format + "', expected csv, vcard or ndjson"));
+        }
+        String filename = "phonebook." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = gzip
+                ? out -> {
+                    GzipStream compressed = new GzipStream(out);
+                    try {
+                        phoneBookExporter.export(exportFormat, compressed);
+                        compressed.finish();
+                        compressed.flush();
+                    } finally {
+                        compressed.end();
+                    }
+                }
+                : out -> phoneBookExporter.export(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType(APPLICATION_GZIP)
+                        : MediaType.parseMediaType(exportFormat.getMediaType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Gzips into the response without closing it; {@link #end()} frees the deflater's native memory, which
+     * {@link GZIPOutputStream} only does on close.
+     */
+    private static final class GzipStream extends GZIPOutputStream {
+
+        private GzipStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER);
+        }
+
+        private void end() {
+            def.end();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.vadim01er.controller;
+
+final class Paging {
+
+    static final String PAGE_SIZE = "100";
+    static final long MAX_PAGE_SIZE = 1000;
+
+    private Paging() {
+    }
+}
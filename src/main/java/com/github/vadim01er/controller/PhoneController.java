@@ -1,22 +1,44 @@
 package com.github.vadim01er.controller;
 
+import com.github.vadim01er.entity.BulkPhoneDTO;
 import com.github.vadim01er.entity.Phone;
 import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.PhonePatchDTO;
+import com.github.vadim01er.json.BulkRowReader;
 import com.github.vadim01er.json.ExceptionResponse;
+import com.github.vadim01er.json.ImportReport;
 import com.github.vadim01er.json.JsonResponse;
 import com.github.vadim01er.json.ListJsonResponse;
+import com.github.vadim01er.json.LookupJsonResponse;
+import com.github.vadim01er.json.NdJsonWriter;
 import com.github.vadim01er.json.ObjectJsonResponse;
+import com.github.vadim01er.json.PageJsonResponse;
+import com.github.vadim01er.search.NumberSuggester;
+import com.github.vadim01er.service.ImportService;
 import com.github.vadim01er.service.PhoneService;
+import com.github.vadim01er.validation.PhoneNumber;
 import lombok.AllArgsConstructor;
+import org.hibernate.validator.constraints.Length;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
-import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
+import static com.github.vadim01er.controller.Paging.MAX_PAGE_SIZE;
+import static com.github.vadim01er.controller.Paging.PAGE_SIZE;
+
 @Validated
 @RestController
 @RequestMapping("/phones")
@@ -24,26 +46,65 @@ import java.util.List;
 public class PhoneController {
 
     private final PhoneService phoneService;
+    private final ImportService importService;
+    private final NdJsonWriter ndJsonWriter;
+    private final BulkRowReader bulkRowReader;
+    private final NumberSuggester numberSuggester;
 
-    private static final String regexp = "^\\+?([0-9])?\\(?[0-9]{3}\\)?[0-9]{3}\\-?[0-9]{2}\\-?[0-9]{2}$";
+    private static final long MAX_SUGGESTIONS = 100;
 
     @GetMapping()
-    public ResponseEntity<JsonResponse> getAll() {
+    public ResponseEntity<JsonResponse> getAll(@RequestParam(value = "after", defaultValue = "0") long after,
+                                               @Min(1) @Max(MAX_PAGE_SIZE)
+                                               @RequestParam(value = "limit", defaultValue = PAGE_SIZE) int limit) {
+        List<Phone> page = phoneService.findPage(after, limit);
+        Long next = page.size() == limit ? page.get(page.size() - 1).getId() : null;
+        return ResponseEntity.ok()
+                .body(new PageJsonResponse(page, next));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndJsonWriter.stream(phoneService::forEach));
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE, BulkRowReader.TEXT_CSV_VALUE})
+    public ResponseEntity<JsonResponse> addPhones(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                  InputStream body) throws IOException {
+        ImportReport report = importService.importPhones(bulkRowReader.read(body, contentType, BulkPhoneDTO.class));
+        return ResponseEntity.ok().body(new ObjectJsonResponse(report));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<JsonResponse> suggest(@Length(min = 1) @RequestParam("prefix") String prefix,
+                                                @Min(1) @Max(MAX_SUGGESTIONS)
+                                                @RequestParam(value = "limit", defaultValue = "10") int limit) {
         return ResponseEntity.ok()
-                .body(new ListJsonResponse(phoneService.findAll()));
+                .body(new ListJsonResponse(numberSuggester.suggest(prefix, limit)));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<JsonResponse> getById(@PathVariable("id") Long id) {
+    public ResponseEntity<JsonResponse> getById(@PathVariable("id") Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                        String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Long version = phoneService.findVersion(id);
+            if (version != null && ETags.matches(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ETags.of(version)).build();
+            }
+        }
         Phone byId = phoneService.findById(id);
         return byId != null
-                ? ResponseEntity.ok().body(new ObjectJsonResponse(byId))
+                ? ResponseEntity.ok().eTag(ETags.of(byId.getVersion())).body(new ObjectJsonResponse(byId))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                         new ExceptionResponse(HttpStatus.NOT_FOUND, "No such Phone"));
     }
 
     @GetMapping(params = {"number"})
-    public ResponseEntity<JsonResponse> getByNumber(@Valid @Pattern(regexp= regexp) @RequestParam("number") String number) {
+    public ResponseEntity<JsonResponse> getByNumber(@PhoneNumber @RequestParam("number") String number) {
         List<Phone> byId = phoneService.findByNumber(number);
         return !byId.isEmpty()
                 ? ResponseEntity.ok().body(new ListJsonResponse(byId))
@@ -51,18 +112,55 @@ public class PhoneController {
                         new ExceptionResponse(HttpStatus.NOT_FOUND, "No such Phone"));
     }
 
+    @PostMapping("/lookup")
+    public ResponseEntity<JsonResponse> lookup(@Size(min = 1, max = (int) MAX_PAGE_SIZE)
+                                               @RequestBody List<String> numbers) {
+        List<List<Phone>> phones = phoneService.findByNumbers(numbers);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < numbers.size(); i++) {
+            if (phones.get(i).isEmpty()) {
+                missing.add(numbers.get(i));
+            }
+        }
+        return ResponseEntity.ok()
+                .body(new LookupJsonResponse(phones, missing));
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<JsonResponse> replacePhone(@PathVariable("id") Long id, @Valid @RequestBody PhoneDTO phoneDTO) {
-        Phone phone = phoneService.replacePhone(id, phoneDTO);
+    public ResponseEntity<JsonResponse> replacePhone(@PathVariable("id") Long id,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                            String ifMatch,
+                                                    @Valid @RequestBody PhoneDTO phoneDTO) {
+        Phone phone = phoneService.replacePhone(id, phoneDTO, ETags.expectedVersion(ifMatch));
         return phone != null
-                ? ResponseEntity.ok().body(new ObjectJsonResponse(phone))
+                ? ResponseEntity.ok().eTag(ETags.of(phone.getVersion())).body(new ObjectJsonResponse(phone))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND));
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<JsonResponse> patchPhone(@PathVariable("id") Long id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                           String ifMatch,
+                                                   @Valid @RequestBody PhonePatchDTO phonePatchDTO) {
+        Phone phone = phoneService.patchPhone(id, phonePatchDTO, ETags.expectedVersion(ifMatch));
+        return phone != null
+                ? ResponseEntity.ok().eTag(ETags.of(phone.getVersion())).body(new ObjectJsonResponse(phone))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<JsonResponse> deletePhone(@PathVariable("id") Long id) {
         return phoneService.deleteById(id)
-                ? ResponseEntity.ok().body(new ObjectJsonResponse(phoneService.deleteById(id)))
+                ? ResponseEntity.ok().body(new ObjectJsonResponse(true))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND));
+    }
+
+    @DeleteMapping(params = {"ids"})
+    public ResponseEntity<JsonResponse> deletePhones(@Size(min = 1, max = (int) MAX_PAGE_SIZE)
+                                                     @RequestParam("ids") List<Long> ids) {
+        int deleted = phoneService.deleteAll(ids);
+        return deleted > 0
+                ? ResponseEntity.ok().body(new ObjectJsonResponse(deleted))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND));
     }
 }
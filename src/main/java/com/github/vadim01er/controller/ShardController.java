@@ -0,0 +1,52 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.json.ExceptionResponse;
+import com.github.vadim01er.json.JsonResponse;
+import com.github.vadim01er.json.ListJsonResponse;
+import com.github.vadim01er.json.ObjectJsonResponse;
+import com.github.vadim01er.sharding.ShardMap;
+import com.github.vadim01er.sharding.ShardRebalancer;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/shards")
+@AllArgsConstructor
+@ConditionalOnProperty(name = "phonebook.shards.urls")
+public class ShardController {
+
+    private final ShardRebalancer shardRebalancer;
+    private final ShardMap shardMap;
+
+    @GetMapping()
+    public ResponseEntity<JsonResponse> getStats() {
+        return ResponseEntity.ok().body(new ListJsonResponse(shardRebalancer.stats()));
+    }
+
+    @GetMapping("/chunks")
+    public ResponseEntity<JsonResponse> getMovedChunks() {
+        return ResponseEntity.ok().body(new ObjectJsonResponse(shardMap.movedChunks()));
+    }
+
+    @PostMapping("/rebalance")
+    public ResponseEntity<JsonResponse> rebalance() {
+        return ResponseEntity.ok().body(new ListJsonResponse(shardRebalancer.rebalance()));
+    }
+
+    @PostMapping("/chunks/{chunk}")
+    public ResponseEntity<JsonResponse> move(@PathVariable("chunk") long chunk, @RequestParam("to") int target) {
+        try {
+            return ResponseEntity.ok().body(new ObjectJsonResponse(shardRebalancer.move(chunk, target)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ExceptionResponse(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+    }
+}
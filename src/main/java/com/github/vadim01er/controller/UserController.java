@@ -4,24 +4,41 @@ import com.github.vadim01er.entity.Phone;
 import com.github.vadim01er.entity.PhoneDTO;
 import com.github.vadim01er.entity.User;
 import com.github.vadim01er.entity.UserDTO;
+import com.github.vadim01er.entity.UserSummary;
+import com.github.vadim01er.json.BulkRowReader;
 import com.github.vadim01er.json.ExceptionResponse;
+import com.github.vadim01er.json.ImportReport;
 import com.github.vadim01er.json.JsonResponse;
-import com.github.vadim01er.json.ListJsonResponse;
+import com.github.vadim01er.json.LookupJsonResponse;
+import com.github.vadim01er.json.NdJsonWriter;
 import com.github.vadim01er.json.ObjectJsonResponse;
+import com.github.vadim01er.json.PageJsonResponse;
+import com.github.vadim01er.service.ImportService;
 import com.github.vadim01er.service.PhoneService;
 import com.github.vadim01er.service.UserService;
 import lombok.AllArgsConstructor;
 import org.hibernate.validator.constraints.Length;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static com.github.vadim01er.controller.Paging.MAX_PAGE_SIZE;
+import static com.github.vadim01er.controller.Paging.PAGE_SIZE;
+
 @Validated
 @RestController
 @RequestMapping("/users")
@@ -30,11 +47,35 @@ public class UserController {
 
     private final UserService userService;
     private final PhoneService phoneService;
+    private final ImportService importService;
+    private final NdJsonWriter ndJsonWriter;
+    private final BulkRowReader bulkRowReader;
 
     @GetMapping()
-    public ResponseEntity<JsonResponse> getAll() {
+    public ResponseEntity<JsonResponse> getAll(@RequestParam(value = "after", defaultValue = "0") long after,
+                                               @Min(1) @Max(MAX_PAGE_SIZE)
+                                               @RequestParam(value = "limit", defaultValue = PAGE_SIZE) int limit,
+                                               @RequestParam(value = "expand", required = false) String expand) {
+        if (Expand.phones(expand)) {
+            List<User> page = userService.findPage(after, limit);
+            Long next = page.size() == limit ? page.get(page.size() - 1).getId() : null;
+            return ResponseEntity.ok()
+                    .body(new PageJsonResponse(page, next));
+        }
+        List<UserSummary> page = userService.findSummaryPage(after, limit);
+        Long next = page.size() == limit ? page.get(page.size() - 1).getId() : null;
+        return ResponseEntity.ok()
+                .body(new PageJsonResponse(page, next));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam(value = "expand", required = false) String expand) {
+        StreamingResponseBody body = Expand.phones(expand)
+                ? ndJsonWriter.<User>stream(userService::forEachWithPhones)
+                : ndJsonWriter.<UserSummary>stream(userService::forEach);
         return ResponseEntity.ok()
-                .body(new ListJsonResponse(userService.findAll()));
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PostMapping()
@@ -45,39 +86,86 @@ public class UserController {
                 : ResponseEntity.badRequest().body(new ExceptionResponse(HttpStatus.BAD_REQUEST));
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE, BulkRowReader.TEXT_CSV_VALUE})
+    public ResponseEntity<JsonResponse> addUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                 InputStream body) throws IOException {
+        ImportReport report = importService.importUsers(bulkRowReader.read(body, contentType, UserDTO.class));
+        return ResponseEntity.ok().body(new ObjectJsonResponse(report));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<JsonResponse> getById(@PathVariable("id") Long id) {
+    public ResponseEntity<JsonResponse> getById(@PathVariable("id") Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                        String ifNoneMatch) {
+        ResponseEntity<JsonResponse> notModified = notModified(id, ifNoneMatch);
+        if (notModified != null) {
+            return notModified;
+        }
         User byId = userService.findById(id);
         return byId != null
-                ? ResponseEntity.ok().body(new ObjectJsonResponse(byId))
+                ? ResponseEntity.ok().eTag(ETags.of(byId.getVersion())).body(new ObjectJsonResponse(byId))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                         new ExceptionResponse(HttpStatus.NOT_FOUND, "No such User"));
     }
 
     @GetMapping(params = {"name"})
-    public ResponseEntity<JsonResponse> getByName(@Length(min = 1) @RequestParam("name") String name) {
-        List<User> all = userService.findAll();
-        Pattern pattern = Pattern.compile(".*" + name + ".*");
-        all = all.stream().filter(user -> pattern.matcher(user.getName()).find()).collect(Collectors.toList());
-        return !all.isEmpty()
-                ? ResponseEntity.ok().body(new ListJsonResponse(all))
+    public ResponseEntity<JsonResponse> getByName(@Length(min = 1) @RequestParam("name") String name,
+                                                  @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+                                                  @RequestParam(value = "after", defaultValue = "0") long after,
+                                                  @Min(1) @Max(MAX_PAGE_SIZE)
+                                                  @RequestParam(value = "limit", defaultValue = PAGE_SIZE) int limit,
+                                                  @RequestParam(value = "expand", required = false) String expand) {
+        List<User> page = userService.findByName(name, prefix, after, limit);
+        Long next = page.size() == limit ? page.get(page.size() - 1).getId() : null;
+        return !page.isEmpty()
+                ? ResponseEntity.ok().body(new PageJsonResponse(Expand.phones(expand)
+                        ? page
+                        : page.stream().map(UserSummary::of).collect(Collectors.toList()), next))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(new ExceptionResponse(HttpStatus.NOT_FOUND, "No such User"));
     }
 
+    @GetMapping(params = {"ids"})
+    public ResponseEntity<JsonResponse> getByIds(@Size(min = 1, max = (int) MAX_PAGE_SIZE)
+                                                 @RequestParam("ids") List<Long> ids,
+                                                 @RequestParam(value = "expand", required = false) String expand) {
+        List<User> users = userService.findAllById(ids);
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (users.get(i) == null) {
+                missing.add(ids.get(i));
+            }
+        }
+        return ResponseEntity.ok()
+                .body(new LookupJsonResponse(Expand.phones(expand)
+                        ? users
+                        : users.stream().map(user -> user != null ? UserSummary.of(user) : null)
+                        .collect(Collectors.toList()), missing));
+    }
+
     @GetMapping("/{id}/phones")
-    public ResponseEntity<JsonResponse> getUserPhonesById(@PathVariable("id") Long id) {
+    public ResponseEntity<JsonResponse> getUserPhonesById(@PathVariable("id") Long id,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                  required = false) String ifNoneMatch) {
+        ResponseEntity<JsonResponse> notModified = notModified(id, ifNoneMatch);
+        if (notModified != null) {
+            return notModified;
+        }
         User byId = userService.findById(id);
         return byId != null
-                ? ResponseEntity.ok().body(new ObjectJsonResponse(byId.getPhone()))
+                ? ResponseEntity.ok().eTag(ETags.of(byId.getVersion())).body(new ObjectJsonResponse(byId.getPhone()))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<JsonResponse> replaceUser(@PathVariable("id") Long id, @Valid @RequestBody UserDTO userRequest) {
-        User user = userService.replaceUser(id, userRequest);
+    public ResponseEntity<JsonResponse> replaceUser(@PathVariable("id") Long id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                           String ifMatch,
+                                                   @Valid @RequestBody UserDTO userRequest) {
+        UserSummary user = userService.replaceUser(id, userRequest, ETags.expectedVersion(ifMatch));
         return user != null
-                ? ResponseEntity.ok().body(new ObjectJsonResponse(user))
+                ? ResponseEntity.ok().eTag(ETags.of(user.getVersion())).body(new ObjectJsonResponse(user))
                 : ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ExceptionResponse(HttpStatus.NOT_FOUND));
     }
 
@@ -90,7 +178,7 @@ public class UserController {
 
     @PostMapping("/{id}/phones")
     public ResponseEntity<JsonResponse> saveContact(@PathVariable("id") Long id, @Valid @RequestBody PhoneDTO phoneDTO) {
-        User user = userService.findById(id);
+        User user = userService.findForWrite(id);
         if (user == null) {
             return ResponseEntity.badRequest().body(
                     new ExceptionResponse(HttpStatus.BAD_REQUEST, "No find User"));
@@ -101,4 +189,13 @@ public class UserController {
                 : ResponseEntity.badRequest().body(new ExceptionResponse(HttpStatus.BAD_REQUEST));
     }
 
+    private ResponseEntity<JsonResponse> notModified(Long id, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        Long version = userService.findVersion(id);
+        return version != null && ETags.matches(ifNoneMatch, version)
+                ? ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ETags.of(version)).build()
+                : null;
+    }
 }
@@ -0,0 +1,206 @@
+package com.github.vadim01er.dedup;
+
+import com.github.vadim01er.json.DuplicateReport;
+import com.github.vadim01er.json.MergeReport;
+import com.github.vadim01er.sharding.ShardContext;
+import com.github.vadim01er.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the duplicate scan, optionally followed by a merge of what it found, on a background thread, one run at a
+ * time; with {@code scan-interval-millis} also periodically. The merge goes shard by shard in batches of
+ * {@code batch-size} clusters, each batch one short transaction of {@link DuplicateMerger}, so the live API only
+ * ever waits for the users of one batch. Users are only merged with duplicates on their own shard, and clusters
+ * with users that are being moved between shards are skipped. A batch that loses a deadlock or lock wait to a
+ * live write is retried up to {@code MERGE_ATTEMPTS} times. The periodic scan starts once the application is ready,
+ * so it also runs under lazy initialization.
+ */
+@Slf4j
+@Component
+public class DuplicateJob {
+
+    private static final int MERGE_ATTEMPTS = 3;
+
+    private final DuplicateScanner duplicateScanner;
+    private final DuplicateMerger duplicateMerger;
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final long scanIntervalMillis;
+    private final boolean autoMerge;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "duplicate-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile DuplicateReport report;
+    private volatile MergeReport merge;
+
+    public DuplicateJob(DuplicateScanner duplicateScanner, DuplicateMerger duplicateMerger, ShardRouter shardRouter,
+                        @Value("${phonebook.duplicates.batch-size:100}") int batchSize,
+                        @Value("${phonebook.duplicates.scan-interval-millis:0}") long scanIntervalMillis,
+                        @Value("${phonebook.duplicates.auto-merge:false}") boolean autoMerge) {
+        this.duplicateScanner = duplicateScanner;
+        this.duplicateMerger = duplicateMerger;
+        this.shardRouter = shardRouter;
+        this.batchSize = Math.max(1, batchSize);
+        this.scanIntervalMillis = scanIntervalMillis;
+        this.autoMerge = autoMerge;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedule() {
+        if (scanIntervalMillis > 0) {
+            executor.scheduleWithFixedDelay(() -> {
+                if (running.compareAndSet(false, true)) {
+                    run(true, autoMerge);
+                }
+            }, scanIntervalMillis, scanIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return {@code false} if a run is already in progress
+     */
+    public boolean startScan(boolean merge) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> run(true, merge));
+        return true;
+    }
+
+    /**
+     * Merges the clusters of the last scan.
+     *
+     * @return {@code false} if a run is already in progress or nothing has been scanned yet
+     */
+    public boolean startMerge() {
+        if (report == null || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> run(false, true));
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public DuplicateReport getReport() {
+        return report;
+    }
+
+    public MergeReport getMerge() {
+        return merge;
+    }
+
+    private void run(boolean scan, boolean merge) {
+        try {
+            if (scan) {
+                report = duplicateScanner.scan();
+            }
+            if (merge) {
+                this.merge = merge(report);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Duplicate job failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private MergeReport merge(DuplicateReport report) {
+        long start = System.nanoTime();
+        Map<Integer, List<List<Long>>> clusters = new TreeMap<>();
+        for (DuplicateReport.NameCluster cluster : report.getNameClusters()) {
+            Map<Integer, List<Long>> byShard = new TreeMap<>();
+            cluster.getUserIds().forEach(id -> byShard.computeIfAbsent(shardRouter.shardOfUser(id),
+                    shard -> new ArrayList<>()).add(id));
+            byShard.forEach((shard, ids) -> {
+                if (ids.size() > 1) {
+                    clusters.computeIfAbsent(shard, key -> new ArrayList<>()).add(ids);
+                }
+            });
+        }
+        Map<Integer, Set<Long>> owners = new TreeMap<>();
+        for (DuplicateReport.NumberCluster cluster : report.getNumberClusters()) {
+            if (cluster.getPhoneIds().size() > cluster.getUserIds().size()) {
+                cluster.getUserIds().forEach(id -> owners.computeIfAbsent(shardRouter.shardOfUser(id),
+                        shard -> new TreeSet<>()).add(id));
+            }
+        }
+
+        MergeReport total = new MergeReport();
+        for (int shard = 0; shard < shardRouter.shards(); shard++) {
+            List<List<Long>> shardClusters = clusters.getOrDefault(shard, Collections.emptyList());
+            for (int from = 0; from < shardClusters.size(); from += batchSize) {
+                List<List<Long>> batch = new ArrayList<>();
+                for (List<Long> ids : shardClusters.subList(from, Math.min(from + batchSize, shardClusters.size()))) {
+                    if (ids.stream().anyMatch(shardRouter::isMoving)) {
+                        total.skip(1);
+                    } else {
+                        batch.add(ids);
+                    }
+                }
+                mergeBatch(shard, batch, Collections.emptyList(), total);
+            }
+            List<Long> shardOwners = new ArrayList<>(owners.getOrDefault(shard, Collections.emptySet()));
+            for (int from = 0; from < shardOwners.size(); from += batchSize) {
+                List<Long> batch = new ArrayList<>();
+                for (Long id : shardOwners.subList(from, Math.min(from + batchSize, shardOwners.size()))) {
+                    if (shardRouter.isMoving(id)) {
+                        total.skip(1);
+                    } else {
+                        batch.add(id);
+                    }
+                }
+                mergeBatch(shard, Collections.emptyList(), batch, total);
+            }
+        }
+        total.finish(System.nanoTime() - start);
+        log.info("Merged {} duplicate users into others, moved {} and deleted {} duplicate phones "
+                        + "in {} batches and {} ms, skipped {}", total.getUsersMerged(), total.getPhonesMoved(),
+                total.getPhonesDeleted(), total.getBatches(), total.getElapsedMillis(), total.getSkipped());
+        return total;
+    }
+
+    private void mergeBatch(int shard, List<List<Long>> clusters, List<Long> owners, MergeReport total) {
+        if (clusters.isEmpty() && owners.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                total.add(ShardContext.call(shard, () -> duplicateMerger.merge(clusters, owners)));
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MERGE_ATTEMPTS) {
+                    log.warn("Merging a batch of duplicates on shard {} kept losing locks", shard, e);
+                    total.skip(clusters.size() + owners.size());
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Merging a batch of duplicates on shard {} failed", shard, e);
+                total.skip(clusters.size() + owners.size());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.vadim01er.dedup;
+
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneRow;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.json.MergeReport;
+import com.github.vadim01er.push.ChangeBroadcaster;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.search.NameSearch;
+import com.github.vadim01er.service.AfterCommit;
+import com.github.vadim01er.service.PhoneService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Merges one batch of duplicates in one transaction, on the shard bound by the caller.
+ * The phones of the batch's users and then the users themselves are locked row by row, in id order, which holds
+ * off concurrent writes to them (phones being added included) until the batch commits; the rest of the phone book
+ * stays writable. Phones go first, as on the live write path, which updates a phone and then bumps its user, so the
+ * two cannot deadlock. Clusters are checked again against the locked rows, so users renamed or deleted since the
+ * scan are left alone.
+ */
+@Service
+@RequiredArgsConstructor
+public class DuplicateMerger {
+
+    private final UserRepo userRepo;
+    private final PhoneRepo phoneRepo;
+    private final NameNormalizer nameNormalizer;
+    private final PhoneService phoneService;
+    private final NameSearch nameSearch;
+    private final LookupCache<Long, User> userCache;
+    private final LookupCache<Long, Phone> phoneCache;
+    private final LookupCache<Long, List<Phone>> numberCache;
+    private final ChangeBroadcaster changeBroadcaster;
+
+    /**
+     * Merges the users of every cluster that still share a name into the lowest id among them, moving their phones
+     * over, then deletes all but the lowest-id phone of every number a survivor or one of {@code owners} holds
+     * more than once.
+     */
+    @Transactional
+    public MergeReport merge(List<List<Long>> userClusters, Collection<Long> owners) {
+        Set<Long> ids = new HashSet<>(owners);
+        userClusters.forEach(ids::addAll);
+        MergeReport report = new MergeReport();
+        if (ids.isEmpty()) {
+            return report;
+        }
+        phoneRepo.findLockedByUserIdInOrderById(ids);
+        Map<Long, User> locked = userRepo.findLockedByIdInOrderById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        Set<Long> holders = new TreeSet<>();
+        List<Long> deletedUsers = new ArrayList<>();
+        List<PhoneRow> moved = new ArrayList<>();
+        for (List<Long> cluster : userClusters) {
+            Map<String, List<Long>> byName = new HashMap<>();
+            for (Long id : cluster) {
+                User user = locked.get(id);
+                String key = user == null ? null : nameNormalizer.normalize(user.getName());
+                if (key != null) {
+                    byName.computeIfAbsent(key, name -> new ArrayList<>()).add(id);
+                }
+            }
+            for (List<Long> same : byName.values()) {
+                if (same.size() < 2) {
+                    continue;
+                }
+                Collections.sort(same);
+                Long survivor = same.get(0);
+                List<Long> duplicates = same.subList(1, same.size());
+                moved.addAll(phoneRepo.reassignReturning(duplicates, survivor));
+                duplicates.forEach(userRepo::deleteCascadeReturning);
+                deletedUsers.addAll(duplicates);
+                holders.add(survivor);
+            }
+        }
+        owners.stream().filter(locked::containsKey).forEach(holders::add);
+        deletedUsers.forEach(holders::remove);
+
+        List<PhoneRow> deletedPhones = holders.isEmpty()
+                ? Collections.emptyList()
+                : phoneRepo.deleteAllReturning(duplicatePhones(phoneRepo.findRowsByUserIdIn(holders)));
+
+        AfterCommit.run(() -> {
+            moved.forEach(row -> {
+                phoneCache.evict(row.getId());
+                numberCache.evict(row.getNormalizedNumber());
+            });
+            changeBroadcaster.publish(Change.Type.PHONE, Change.Operation.UPSERT,
+                    moved.stream().map(PhoneRow::getId).collect(Collectors.toList()));
+            deletedPhones.forEach(phoneService::evictDeleted);
+            deletedUsers.forEach(id -> {
+                userCache.evict(id);
+                nameSearch.remove(id);
+            });
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.DELETE, deletedUsers);
+            holders.forEach(userCache::evict);
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, holders);
+        });
+        report.merged(deletedUsers.size(), moved.size(), deletedPhones.size());
+        return report;
+    }
+
+    /**
+     * @return the ids of phones whose owner holds the same number under a lower phone id
+     */
+    private static List<Long> duplicatePhones(List<PhoneRow> rows) {
+        List<PhoneRow> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingLong(PhoneRow::getId));
+        Map<Long, Set<Long>> numbersByUser = new HashMap<>();
+        List<Long> duplicates = new ArrayList<>();
+        for (PhoneRow row : sorted) {
+            if (row.getNormalizedNumber() != null && !numbersByUser
+                    .computeIfAbsent(row.getUserId(), user -> new HashSet<>())
+                    .add(row.getNormalizedNumber())) {
+                duplicates.add(row.getId());
+            }
+        }
+        return duplicates;
+    }
+}
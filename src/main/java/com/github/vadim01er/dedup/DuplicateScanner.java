@@ -0,0 +1,322 @@
+package com.github.vadim01er.dedup;
+
+import com.github.vadim01er.json.DuplicateReport;
+import com.github.vadim01er.sharding.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds users with the same normalized name and phones with the same normalized number without taking any locks.
+ * The scan reads through its own read-only pool of {@code parallelism} connections per shard (to the first replica
+ * if there are replicas), so it never competes with the live API for the primary pool; the pool closes its
+ * connections once they have been idle for ten seconds.
+ * <p>
+ * Numbers are grouped by the database: the range of normalized numbers on each shard is split into about
+ * {@code parallelism} partitions, and each partition returns only the phones of numbers it holds more than once.
+ * Names are normalized in Java, which SQL cannot reproduce, so the user table is read in partitions of
+ * {@code partition-size} ids on a fork-join pool of {@code parallelism} threads, and the partial tables keyed by
+ * name are combined while the fork-join tree unwinds. To bound memory, a pass keeps only the names whose hash falls
+ * into its share: with more than {@code names-per-pass} users the table is read once per share, and after each pass
+ * only the names held more than once are kept.
+ */
+@Slf4j
+@Component
+public class DuplicateScanner {
+
+    private static final long IDLE_TIMEOUT_MILLIS = 10_000;
+
+    private static final String USER_BOUNDS = "SELECT min(user_id), max(user_id), count(*) FROM users";
+    private static final String NUMBER_BOUNDS = "SELECT min(normalized_number), max(normalized_number), count(*) "
+            + "FROM phone WHERE normalized_number IS NOT NULL";
+    private static final String USERS = "SELECT user_id, name FROM users WHERE user_id >= ? AND user_id <= ?";
+    private static final String DUPLICATE_NUMBERS = "SELECT p.normalized_number, p.phone_id, p.user_id FROM phone p "
+            + "WHERE p.normalized_number IN (SELECT normalized_number FROM phone "
+            + "WHERE normalized_number >= ? AND normalized_number <= ? "
+            + "GROUP BY normalized_number HAVING count(*) > 1)";
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+    private final ShardRouter shardRouter;
+    private final NameNormalizer nameNormalizer;
+    private final int parallelism;
+    private final long partitionSize;
+    private final long namesPerPass;
+
+    public DuplicateScanner(DataSourceProperties properties, Environment environment, ShardRouter shardRouter,
+                            NameNormalizer nameNormalizer,
+                            @Value("${phonebook.shards.urls:}") List<String> shardUrls,
+                            @Value("${phonebook.replicas.urls:}") List<String> replicaUrls,
+                            @Value("${phonebook.duplicates.parallelism:4}") int parallelism,
+                            @Value("${phonebook.duplicates.partition-size:100000}") long partitionSize,
+                            @Value("${phonebook.duplicates.names-per-pass:1000000}") long namesPerPass) {
+        this.shardRouter = shardRouter;
+        this.nameNormalizer = nameNormalizer;
+        this.parallelism = Math.max(1, parallelism);
+        this.partitionSize = Math.max(1, partitionSize);
+        this.namesPerPass = Math.max(1, namesPerPass);
+        List<String> urls = new ArrayList<>();
+        urls.add(replicaUrls.isEmpty() ? properties.determineUrl() : replicaUrls.get(0).trim());
+        shardUrls.forEach(url -> urls.add(url.trim()));
+        for (int shard = 0; shard < urls.size(); shard++) {
+            HikariDataSource pool = pool(properties, urls.get(shard), "duplicate-scan-" + shard, this.parallelism,
+                    environment);
+            pools.add(pool);
+            shards.add(new JdbcTemplate(pool));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    public DuplicateReport scan() {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("duplicate-scan-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        List<DuplicateReport.NameCluster> nameClusters = new ArrayList<>();
+        Aggregate<Long> numbers = new Aggregate<>();
+        long users = 0;
+        long phones = 0;
+        try {
+            long[][] userBounds = new long[shards.size()][];
+            for (int shard = 0; shard < shards.size(); shard++) {
+                userBounds[shard] = bounds(shard, USER_BOUNDS);
+                users += userBounds[shard] == null ? 0 : userBounds[shard][2];
+            }
+            int passes = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (users + namesPerPass - 1) / namesPerPass));
+            for (int pass = 0; pass < passes; pass++) {
+                Aggregate<String> names = new Aggregate<>();
+                for (int shard = 0; shard < shards.size(); shard++) {
+                    long[] bounds = userBounds[shard];
+                    if (bounds != null) {
+                        names = names.combine(pool.invoke(new ScanTask<>(shard, bounds[0], bounds[1], partitionSize,
+                                new UserReader(passes, pass))));
+                    }
+                }
+                names.groups.forEach((name, ids) -> {
+                    if (ids.size > 1) {
+                        nameClusters.add(new DuplicateReport.NameCluster(name, ids.sorted(0, 1)));
+                    }
+                });
+            }
+            for (int shard = 0; shard < shards.size(); shard++) {
+                long[] bounds = bounds(shard, NUMBER_BOUNDS);
+                if (bounds != null) {
+                    phones += bounds[2];
+                    long span = Math.max(1, (bounds[1] - bounds[0]) / parallelism + 1);
+                    numbers = numbers.combine(pool.invoke(
+                            new ScanTask<>(shard, bounds[0], bounds[1], span, this::readDuplicateNumbers)));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        nameClusters.sort(Comparator.comparingInt((DuplicateReport.NameCluster cluster) -> -cluster.getUserIds().size())
+                .thenComparing(DuplicateReport.NameCluster::getName));
+        List<DuplicateReport.NumberCluster> numberClusters = new ArrayList<>();
+        numbers.groups.forEach((number, pairs) -> {
+            if (pairs.size > 2) {
+                numberClusters.add(new DuplicateReport.NumberCluster(number, pairs.sorted(0, 2),
+                        pairs.sorted(1, 2)));
+            }
+        });
+        numberClusters.sort(Comparator.comparingInt((DuplicateReport.NumberCluster cluster) ->
+                        -cluster.getPhoneIds().size())
+                .thenComparingLong(DuplicateReport.NumberCluster::getNumber));
+
+        DuplicateReport report = new DuplicateReport(users, phones, System.nanoTime() - start,
+                nameClusters, numberClusters);
+        log.info("Scanned {} users and {} phones for duplicates in {} ms ({} rows/s): {} name and {} number clusters",
+                report.getUsers(), report.getPhones(), report.getElapsedMillis(), report.getRowsPerSecond(),
+                report.getNameClusterCount(), report.getNumberClusterCount());
+        return report;
+    }
+
+    /**
+     * @return the lowest and highest key of the table on the shard and its row count, {@code null} if it is empty
+     */
+    private long[] bounds(int shard, String sql) {
+        return shards.get(shard).query(sql, resultSet -> {
+            resultSet.next();
+            long min = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : new long[]{min, resultSet.getLong(2), resultSet.getLong(3)};
+        });
+    }
+
+    private Aggregate<Long> readDuplicateNumbers(int shard, long from, long to) {
+        Aggregate<Long> numbers = new Aggregate<>();
+        shards.get(shard).query(DUPLICATE_NUMBERS, (RowCallbackHandler) resultSet -> {
+            long userId = resultSet.getLong(3);
+            if (shardRouter.owns(userId)) {
+                numbers.add(resultSet.getLong(1), resultSet.getLong(2), userId);
+            }
+        }, from, to);
+        return numbers;
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url, String name, int size,
+                                         Environment environment) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(size);
+        dataSource.setMinimumIdle(0);
+        dataSource.setIdleTimeout(IDLE_TIMEOUT_MILLIS);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    private interface Reader<K> {
+        Aggregate<K> read(int shard, long from, long to);
+    }
+
+    /**
+     * Reads the users of one pass: those whose normalized name hashes to {@code pass} out of {@code passes}.
+     */
+    private final class UserReader implements Reader<String> {
+
+        private final int passes;
+        private final int pass;
+
+        private UserReader(int passes, int pass) {
+            this.passes = passes;
+            this.pass = pass;
+        }
+
+        @Override
+        public Aggregate<String> read(int shard, long from, long to) {
+            Aggregate<String> names = new Aggregate<>();
+            shards.get(shard).query(USERS, (RowCallbackHandler) resultSet -> {
+                long id = resultSet.getLong(1);
+                if (!shardRouter.owns(id)) {
+                    return;
+                }
+                String name = nameNormalizer.normalize(resultSet.getString(2));
+                if (name != null && Math.floorMod(name.hashCode(), passes) == pass) {
+                    names.add(name, id);
+                }
+            }, from, to);
+            return names;
+        }
+    }
+
+    /**
+     * Splits {@code [from, to]} in halves down to {@code span} keys and reads each partition on the shard.
+     */
+    private static final class ScanTask<K> extends RecursiveTask<Aggregate<K>> {
+
+        private final int shard;
+        private final long from;
+        private final long to;
+        private final long span;
+        private final Reader<K> reader;
+
+        private ScanTask(int shard, long from, long to, long span, Reader<K> reader) {
+            this.shard = shard;
+            this.from = from;
+            this.to = to;
+            this.span = span;
+            this.reader = reader;
+        }
+
+        @Override
+        protected Aggregate<K> compute() {
+            if (to - from < span) {
+                return reader.read(shard, from, to);
+            }
+            long middle = from + (to - from) / 2;
+            ScanTask<K> left = new ScanTask<>(shard, from, middle, span, reader);
+            left.fork();
+            Aggregate<K> right = new ScanTask<>(shard, middle + 1, to, span, reader).compute();
+            return left.join().combine(right);
+        }
+    }
+
+    /**
+     * Rows grouped by key; each group holds a fixed number of ids per row.
+     */
+    private static final class Aggregate<K> {
+
+        private final Map<K, Ids> groups = new HashMap<>();
+
+        private void add(K key, long id) {
+            groups.computeIfAbsent(key, k -> new Ids()).add(id);
+        }
+
+        private void add(K key, long id, long otherId) {
+            Ids ids = groups.computeIfAbsent(key, k -> new Ids());
+            ids.add(id);
+            ids.add(otherId);
+        }
+
+        /**
+         * @return the larger of the two aggregates with the smaller one folded in
+         */
+        private Aggregate<K> combine(Aggregate<K> other) {
+            Aggregate<K> larger = groups.size() >= other.groups.size() ? this : other;
+            Aggregate<K> smaller = larger == this ? other : this;
+            smaller.groups.forEach((key, ids) -> larger.groups.merge(key, ids, Ids::addAll));
+            return larger;
+        }
+    }
+
+    private static final class Ids {
+
+        private long[] values = new long[2];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private Ids addAll(Ids other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+            return this;
+        }
+
+        /**
+         * @return every {@code stride}-th value from {@code offset} on, sorted and without repeats
+         */
+        private List<Long> sorted(int offset, int stride) {
+            long[] picked = new long[(size - offset + stride - 1) / stride];
+            for (int i = offset, j = 0; i < size; i += stride, j++) {
+                picked[j] = values[i];
+            }
+            Arrays.sort(picked);
+            List<Long> distinct = new ArrayList<>(picked.length);
+            for (int i = 0; i < picked.length; i++) {
+                if (i == 0 || picked[i] != picked[i - 1]) {
+                    distinct.add(picked[i]);
+                }
+            }
+            return distinct;
+        }
+    }
+}
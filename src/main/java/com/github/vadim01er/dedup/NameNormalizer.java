@@ -0,0 +1,41 @@
+package com.github.vadim01er.dedup;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+
+/**
+ * Reduces a user name to the key duplicates are matched by: {@code "  Ivan   PETROV "}, {@code "ivan petrov"} and
+ * {@code "Ivan-Petrov."} all become {@code "ivan petrov"}. Letters are NFKC-normalized and lowercased,
+ * {@code ё} is folded into {@code е}, and every run of other characters becomes one space.
+ */
+@Component
+public class NameNormalizer {
+
+    /**
+     * @return the key, or {@code null} if the name has no letters or digits
+     */
+    public String normalize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFKC);
+        StringBuilder key = new StringBuilder(normalized.length());
+        boolean gap = false;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                gap = key.length() > 0;
+                continue;
+            }
+            if (gap) {
+                key.append(' ');
+                gap = false;
+            }
+            int lower = Character.toLowerCase(codePoint);
+            key.appendCodePoint(lower == 'ё' ? 'е' : lower);
+        }
+        return key.length() == 0 ? null : key.toString();
+    }
+}
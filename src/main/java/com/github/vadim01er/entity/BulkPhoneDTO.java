@@ -0,0 +1,20 @@
+package com.github.vadim01er.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class BulkPhoneDTO extends PhoneDTO {
+    @NotNull
+    private Long userId;
+
+    public BulkPhoneDTO(Long userId, String name, String number) {
+        super(name, number);
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.vadim01er.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One entry of the change feed. Deleted rows leave a {@link Operation#DELETE} entry behind as their tombstone.
+ */
+@Data
+@Entity
+@Table(name = "changes")
+@NoArgsConstructor
+public class Change {
+
+    public enum Type {
+        USER, PHONE
+    }
+
+    public enum Operation {
+        UPSERT, DELETE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Type entityType;
+
+    @Column(nullable = false)
+    private long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Operation operation;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+}
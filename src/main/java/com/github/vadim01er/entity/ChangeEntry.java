@@ -0,0 +1,23 @@
+package com.github.vadim01er.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class ChangeEntry {
+
+    private long seq;
+
+    private Change.Type type;
+
+    private long id;
+
+    private Change.Operation operation;
+
+    private Instant changedAt;
+
+    private Object data;
+}
@@ -1,29 +1,79 @@
 package com.github.vadim01er.entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Data
 @Entity
-@Table(name = "phone")
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "phone", indexes = @Index(name = "phone_normalized_number_idx", columnList = "normalized_number"))
 @NoArgsConstructor
 @EqualsAndHashCode(of = "id")
 public class Phone {
 
     @Id
     @Column(name = "phone_id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "phone_seq")
+    @GenericGenerator(name = "phone_seq", strategy = "com.github.vadim01er.sharding.ShardSequenceGenerator",
+            parameters = {@Parameter(name = "sequence_name", value = "phone_seq"),
+                    @Parameter(name = "increment_size", value = "50")})
     private Long id;
 
     private String name;
 
     private String number;
 
+    @JsonIgnore
+    @Column(name = "normalized_number")
+    private Long normalizedNumber;
+
+    @JsonIgnore
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    @JsonIgnore
+    @CreatedDate
+    private Instant createdAt;
+
+    @JsonIgnore
+    @LastModifiedDate
+    private Instant modifiedAt;
+
     @JsonBackReference
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    /**
+     * @return a detached copy whose user only carries the owner's id, read without initializing a lazy owner
+     */
+    public Phone copy() {
+        Phone copy = new Phone();
+        copy.id = id;
+        copy.name = name;
+        copy.number = number;
+        copy.normalizedNumber = normalizedNumber;
+        copy.version = version;
+        copy.createdAt = createdAt;
+        copy.modifiedAt = modifiedAt;
+        if (user != null) {
+            User owner = new User();
+            owner.setId(user instanceof HibernateProxy
+                    ? (Long) ((HibernateProxy) user).getHibernateLazyInitializer().getIdentifier()
+                    : user.getId());
+            copy.user = owner;
+        }
+        return copy;
+    }
 }
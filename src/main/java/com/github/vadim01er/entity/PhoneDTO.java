@@ -1,12 +1,12 @@
 package com.github.vadim01er.entity;
 
+import com.github.vadim01er.validation.PhoneNumber;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.validator.constraints.Length;
 
 import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Pattern;
 
 @Data
 @NoArgsConstructor
@@ -17,6 +17,6 @@ public class PhoneDTO {
     private String name;
 
     @NotNull
-    @Pattern(regexp="^\\+?([0-9])?\\(?[0-9]{3}\\)?[0-9]{3}\\-?[0-9]{2}\\-?[0-9]{2}$")
+    @PhoneNumber
     private String number;
 }
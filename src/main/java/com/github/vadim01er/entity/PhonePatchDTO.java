@@ -0,0 +1,18 @@
+package com.github.vadim01er.entity;
+
+import com.github.vadim01er.validation.PhoneNumber;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.validator.constraints.Length;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhonePatchDTO {
+    @Length(min = 1)
+    private String name;
+
+    @PhoneNumber
+    private String number;
+}
@@ -0,0 +1,37 @@
+package com.github.vadim01er.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PhoneRow {
+
+    private long id;
+
+    private long userId;
+
+    private String name;
+
+    private String number;
+
+    @JsonIgnore
+    private Long normalizedNumber;
+
+    @JsonIgnore
+    private Long previousNormalizedNumber;
+
+    @JsonIgnore
+    private long version;
+
+    public Phone toPhone() {
+        Phone phone = new Phone();
+        phone.setId(id);
+        phone.setName(name);
+        phone.setNumber(number);
+        phone.setNormalizedNumber(normalizedNumber);
+        phone.setVersion(version);
+        return phone;
+    }
+}
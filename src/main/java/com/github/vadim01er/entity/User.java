@@ -1,14 +1,23 @@
 package com.github.vadim01er.entity;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 @Data
 @Entity
+@EntityListeners(AuditingEntityListener.class)
 @Table(name = "users")
 @JsonAutoDetect
 @NoArgsConstructor
@@ -16,13 +25,47 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @GenericGenerator(name = "users_seq", strategy = "com.github.vadim01er.sharding.ShardSequenceGenerator",
+            parameters = {@Parameter(name = "sequence_name", value = "users_seq"),
+                    @Parameter(name = "increment_size", value = "50")})
     @Column(name = "user_id")
     private long id;
 
     @NonNull
     private String name;
 
+    @JsonIgnore
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    @JsonIgnore
+    @CreatedDate
+    private Instant createdAt;
+
+    @JsonIgnore
+    @LastModifiedDate
+    private Instant modifiedAt;
+
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "user")
     private Set<Phone> phone = new HashSet<>();
+
+    /**
+     * @return a detached copy with copies of the phones, which must have been loaded
+     */
+    public User copy() {
+        User copy = new User(name);
+        copy.id = id;
+        copy.version = version;
+        copy.createdAt = createdAt;
+        copy.modifiedAt = modifiedAt;
+        for (Phone each : phone) {
+            Phone phoneCopy = each.copy();
+            phoneCopy.setUser(copy);
+            copy.phone.add(phoneCopy);
+        }
+        return copy;
+    }
 }
@@ -0,0 +1,25 @@
+package com.github.vadim01er.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UserSummary {
+
+    private long id;
+
+    private String name;
+
+    @JsonIgnore
+    private Long version;
+
+    public UserSummary(long id, String name) {
+        this(id, name, null);
+    }
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getName(), user.getVersion());
+    }
+}
@@ -1,7 +1,10 @@
 package com.github.vadim01er.exception;
 
 import com.github.vadim01er.json.ExceptionResponse;
+import com.github.vadim01er.sharding.ShardMovingException;
+import com.github.vadim01er.sharding.ShardUnsupportedException;
 import lombok.NonNull;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -58,6 +61,25 @@ public class ExceptionHandler extends ResponseEntityExceptionHandler {
                 new ExceptionResponse(HttpStatus.BAD_REQUEST, "No valid parameter: " + ex.getMessage()));
     }
 
+    @org.springframework.web.bind.annotation.ExceptionHandler(OptimisticLockingFailureException.class)
+    protected ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException ex,
+                                                                    WebRequest request) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(
+                new ExceptionResponse(HttpStatus.PRECONDITION_FAILED, "Resource was modified, reload it and retry"));
+    }
+
+    @org.springframework.web.bind.annotation.ExceptionHandler(ShardMovingException.class)
+    protected ResponseEntity<Object> handleShardMoving(ShardMovingException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").body(
+                new ExceptionResponse(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage()));
+    }
+
+    @org.springframework.web.bind.annotation.ExceptionHandler(ShardUnsupportedException.class)
+    protected ResponseEntity<Object> handleShardUnsupported(ShardUnsupportedException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(
+                new ExceptionResponse(HttpStatus.NOT_IMPLEMENTED, ex.getMessage()));
+    }
+
     @Override
     protected @NonNull ResponseEntity<Object> handleNoHandlerFoundException(@NonNull NoHandlerFoundException ex,
                                                                             @NonNull HttpHeaders headers,
@@ -0,0 +1,114 @@
+package com.github.vadim01er.export;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes rows of PostgreSQL's {@code COPY ... TO STDOUT} text format: tab-separated fields, {@code \N} for
+ * {@code NULL}, and backslash escapes for backslash, control characters and octal or hex byte values.
+ */
+final class CopyText {
+
+    private CopyText() {
+    }
+
+    /**
+     * Fills {@code row} from {@code user_id, name, phone_id, name, number}.
+     *
+     * @throws IllegalArgumentException if the row has more or fewer fields, or no user id
+     */
+    static void decode(byte[] line, ExportRow row) {
+        String[] fields = new String[5];
+        int count = 0;
+        int start = 0;
+        int end = line.length > 0 && line[line.length - 1] == '\n' ? line.length - 1 : line.length;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || line[i] == '\t') {
+                if (count == fields.length) {
+                    throw malformed(line);
+                }
+                fields[count++] = field(line, start, i);
+                start = i + 1;
+            }
+        }
+        if (count != fields.length || fields[0] == null) {
+            throw malformed(line);
+        }
+        row.userId = Long.parseLong(fields[0]);
+        row.userName = fields[1];
+        row.phoneId = fields[2] == null ? null : Long.valueOf(fields[2]);
+        row.phoneName = fields[3];
+        row.number = fields[4];
+    }
+
+    private static IllegalArgumentException malformed(byte[] line) {
+        return new IllegalArgumentException("Malformed COPY row: " + new String(line, StandardCharsets.UTF_8));
+    }
+
+    static String field(byte[] line, int from, int to) {
+        if (to - from == 2 && line[from] == '\\' && line[from + 1] == 'N') {
+            return null;
+        }
+        int backslash = -1;
+        for (int i = from; i < to; i++) {
+            if (line[i] == '\\') {
+                backslash = i;
+                break;
+            }
+        }
+        if (backslash < 0) {
+            return new String(line, from, to - from, StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(to - from);
+        bytes.write(line, from, backslash - from);
+        for (int i = backslash; i < to; i++) {
+            byte b = line[i];
+            if (b != '\\' || i + 1 == to) {
+                bytes.write(b);
+                continue;
+            }
+            byte next = line[++i];
+            switch (next) {
+                case 'b':
+                    bytes.write('\b');
+                    break;
+                case 'f':
+                    bytes.write('\f');
+                    break;
+                case 'n':
+                    bytes.write('\n');
+                    break;
+                case 'r':
+                    bytes.write('\r');
+                    break;
+                case 't':
+                    bytes.write('\t');
+                    break;
+                case 'v':
+                    bytes.write(0x0B);
+                    break;
+                case 'x':
+                    int hex = 0;
+                    int hexDigits = 0;
+                    while (hexDigits < 2 && i + 1 < to && Character.digit(line[i + 1], 16) >= 0) {
+                        hex = hex * 16 + Character.digit(line[++i], 16);
+                        hexDigits++;
+                    }
+                    bytes.write(hexDigits == 0 ? 'x' : hex);
+                    break;
+                default:
+                    if (next >= '0' && next <= '7') {
+                        int octal = next - '0';
+                        for (int digits = 1; digits < 3 && i + 1 < to && line[i + 1] >= '0' && line[i + 1] <= '7';
+                             digits++) {
+                            octal = octal * 8 + line[++i] - '0';
+                        }
+                        bytes.write(octal);
+                    } else {
+                        bytes.write(next);
+                    }
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
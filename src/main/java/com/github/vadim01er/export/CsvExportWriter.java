@@ -0,0 +1,62 @@
+package com.github.vadim01er.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RFC 4180 CSV, one line per user and phone; users without phones have empty phone columns.
+ */
+final class CsvExportWriter implements ExportWriter {
+
+    static final String HEADER = "user_id,user_name,phone_id,phone_name,number\r\n";
+
+    private final Writer out;
+
+    CsvExportWriter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.out.write(HEADER);
+    }
+
+    @Override
+    public void write(ExportRow row) throws IOException {
+        out.write(Long.toString(row.userId));
+        out.write(',');
+        field(row.userName);
+        out.write(',');
+        if (row.phoneId != null) {
+            out.write(row.phoneId.toString());
+        }
+        out.write(',');
+        field(row.phoneName);
+        out.write(',');
+        field(row.number);
+        out.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    private void field(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
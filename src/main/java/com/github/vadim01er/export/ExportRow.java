@@ -0,0 +1,14 @@
+package com.github.vadim01er.export;
+
+/**
+ * One row of {@code users LEFT JOIN phone}; a single instance is refilled for every row, so that an export
+ * allocates nothing per row beyond the strings themselves. The phone fields are {@code null} for a user
+ * without phones.
+ */
+final class ExportRow {
+    long userId;
+    String userName;
+    Long phoneId;
+    String phoneName;
+    String number;
+}
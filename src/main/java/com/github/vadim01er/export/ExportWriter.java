@@ -0,0 +1,32 @@
+package com.github.vadim01er.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes export rows, which arrive ordered by user, onto a stream. Holds at most the current row.
+ */
+interface ExportWriter {
+
+    void write(ExportRow row) throws IOException;
+
+    /**
+     * Completes the output and flushes it; the stream is left open.
+     */
+    void finish() throws IOException;
+
+    static ExportWriter open(ExportFormat format, OutputStream out, JsonFactory jsonFactory) throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvExportWriter(out);
+            case VCARD:
+                return new VCardExportWriter(out);
+            case NDJSON:
+                return new NdJsonExportWriter(out, jsonFactory);
+            default:
+                throw new IllegalArgumentException("Unsupported export format " + format);
+        }
+    }
+}
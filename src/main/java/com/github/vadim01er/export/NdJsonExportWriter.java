@@ -0,0 +1,57 @@
+package com.github.vadim01er.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * One JSON object per user with its phones nested, shaped like {@code GET /users/stream?expand=phones}.
+ */
+final class NdJsonExportWriter implements ExportWriter {
+
+    private final JsonGenerator generator;
+    private Long currentUser;
+
+    NdJsonExportWriter(OutputStream out, JsonFactory jsonFactory) throws IOException {
+        this.generator = jsonFactory.createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void write(ExportRow row) throws IOException {
+        if (currentUser == null || currentUser != row.userId) {
+            endUser();
+            currentUser = row.userId;
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.userId);
+            generator.writeStringField("name", row.userName);
+            generator.writeArrayFieldStart("phone");
+        }
+        if (row.phoneId != null) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.phoneId);
+            generator.writeStringField("name", row.phoneName);
+            generator.writeStringField("number", row.number);
+            generator.writeEndObject();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        endUser();
+        generator.flush();
+    }
+
+    private void endUser() throws IOException {
+        if (currentUser == null) {
+            return;
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        currentUser = null;
+    }
+}
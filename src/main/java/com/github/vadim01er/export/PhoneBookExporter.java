@@ -0,0 +1,129 @@
+package com.github.vadim01er.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadim01er.config.DatabasePlatform;
+import com.github.vadim01er.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyOut;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Streams every user joined with its phones, ordered by user, in one pass over the database in a read-only
+ * transaction (one per shard when sharded). On PostgreSQL the rows come through the COPY protocol, which sends them without per-row protocol
+ * round trips; elsewhere through a forward-only cursor fetching {@code FETCH_SIZE} rows at a time.
+ * Memory use does not depend on the size of the phone book.
+ */
+@Slf4j
+@Component
+public class PhoneBookExporter {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final String SELECT = "SELECT u.user_id, u.name, p.phone_id, p.name, p.number "
+            + "FROM users u LEFT JOIN phone p ON p.user_id = u.user_id ORDER BY u.user_id, p.phone_id";
+    private static final String COPY = "COPY (" + SELECT + ") TO STDOUT";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnly;
+    private final MeterRegistry meterRegistry;
+
+    public PhoneBookExporter(JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform, ShardRouter shardRouter,
+                             ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.databasePlatform = databasePlatform;
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the number of rows exported
+     */
+    public long export(ExportFormat format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        ExportWriter writer = ExportWriter.open(format, out, objectMapper.getFactory());
+        long[] rows = new long[1];
+        try {
+            Runnable pass = () -> read(row -> {
+                if (!shardRouter.owns(row.userId)) {
+                    return;
+                }
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+            if (shardRouter.isSharded()) {
+                shardRouter.forEachShard(pass);
+            } else {
+                readOnly.executeWithoutResult(status -> pass.run());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        long nanos = System.nanoTime() - start;
+        String tag = format.name().toLowerCase(Locale.ROOT);
+        Timer.builder("phonebook.export").tag("format", tag)
+                .register(meterRegistry).record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("phonebook.export.rows").tag("format", tag)
+                .register(meterRegistry).increment(rows[0]);
+        log.info("Exported {} rows as {} in {} ms ({} rows/s)", rows[0], format, TimeUnit.NANOSECONDS.toMillis(nanos),
+                nanos == 0 ? rows[0] : rows[0] * TimeUnit.SECONDS.toNanos(1) / nanos);
+        return rows[0];
+    }
+
+    private void read(Consumer<ExportRow> consumer) {
+        ExportRow row = new ExportRow();
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                CopyOut copy = connection.unwrap(PGConnection.class).getCopyAPI().copyOut(COPY);
+                try {
+                    byte[] line;
+                    while ((line = copy.readFromCopy()) != null) {
+                        CopyText.decode(line, row);
+                        consumer.accept(row);
+                    }
+                } finally {
+                    if (copy.isActive()) {
+                        copy.cancelCopy();
+                    }
+                }
+                return null;
+            });
+            return;
+        }
+        jdbcTemplate.query(SELECT, resultSet -> {
+            row.userId = resultSet.getLong(1);
+            row.userName = resultSet.getString(2);
+            long phoneId = resultSet.getLong(3);
+            row.phoneId = resultSet.wasNull() ? null : phoneId;
+            row.phoneName = resultSet.getString(4);
+            row.number = resultSet.getString(5);
+            consumer.accept(row);
+        });
+    }
+}
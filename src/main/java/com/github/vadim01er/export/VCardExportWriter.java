@@ -0,0 +1,85 @@
+package com.github.vadim01er.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * vCard 3.0 (RFC 2426), one card per phone book entry, with the owning user as its category.
+ * Users without phones have no cards. Lines longer than 75 octets are folded.
+ */
+final class VCardExportWriter implements ExportWriter {
+
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] FOLD = {'\r', '\n', ' '};
+
+    private final OutputStream out;
+
+    VCardExportWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out);
+    }
+
+    @Override
+    public void write(ExportRow row) throws IOException {
+        if (row.phoneId == null) {
+            return;
+        }
+        String name = row.phoneName == null ? "" : escape(row.phoneName);
+        line("BEGIN:VCARD");
+        line("VERSION:3.0");
+        line("UID:phone-" + row.phoneId);
+        line("FN:" + name);
+        line("N:" + name + ";;;;");
+        line("TEL;TYPE=VOICE:" + (row.number == null ? "" : escape(row.number)));
+        line("CATEGORIES:" + (row.userName == null ? "" : escape(row.userName)));
+        line("X-PHONEBOOK-USER-ID:" + row.userId);
+        line("END:VCARD");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    private void line(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int start = 0;
+        int limit = MAX_LINE_OCTETS;
+        while (bytes.length - start > limit) {
+            int end = start + limit;
+            while ((bytes[end] & 0xC0) == 0x80) {
+                end--;
+            }
+            out.write(bytes, start, end - start);
+            out.write(FOLD);
+            start = end;
+            limit = MAX_LINE_OCTETS - 1;
+        }
+        out.write(bytes, start, bytes.length - start);
+        out.write(CRLF);
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ',':
+                case ';':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.vadim01er.filter;
+
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Marks requests this instance sends to itself, such as the warm-up: they come from a loopback address and carry
+ * a token drawn at startup that never leaves the process. The rate limiter lets them through.
+ */
+@Component
+public class InternalRequests {
+
+    public static final String HEADER = "X-Internal-Request";
+
+    private final String token;
+
+    public InternalRequests() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public boolean isInternal(HttpServletRequest request) {
+        return token.equals(request.getHeader(HEADER)) && isLoopback(request.getRemoteAddr());
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
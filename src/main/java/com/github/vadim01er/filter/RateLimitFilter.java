@@ -0,0 +1,161 @@
+package com.github.vadim01er.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadim01er.json.ExceptionResponse;
+import lombok.NonNull;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Per-client token bucket in front of the API, keyed by the {@code X-API-Key} header when it carries one of the
+ * configured keys, or else by the remote address. Behind a reverse proxy the remote address is the proxy's, putting
+ * all keyless traffic in one bucket, unless {@code server.forward-headers-strategy} makes it the client's.
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will be full again (the GCRA form of a
+ * token bucket), so admission is one CAS with no locks or allocation. Requests cost more tokens the more rows they
+ * can touch. Independently of the client, requests are shed with 503 while too many threads wait for a connection.
+ * At most {@code maxClients} buckets are kept: when full, buckets that have refilled are dropped, at most once per
+ * burst period, and clients that still find no room share one overflow bucket. Requests matching {@code exempt}
+ * (this instance's own, see {@link InternalRequests}) are not limited.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY = "X-API-Key";
+
+    static final int LOOKUP_COST = 1;
+    static final int PAGE_COST = 5;
+    static final int SEARCH_COST = 10;
+    static final int BULK_COST = 20;
+    static final int STREAM_COST = 50;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow;
+    private final AtomicLong nextPurge;
+    private final Set<String> apiKeys;
+    private final Predicate<HttpServletRequest> exempt;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final int maxClients;
+    private final int maxAwaitingConnections;
+    private final IntSupplier awaitingConnections;
+    private final LongSupplier clock;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(double tokensPerSecond, int burst, int maxClients, Set<String> apiKeys,
+                           Predicate<HttpServletRequest> exempt, int maxAwaitingConnections,
+                           IntSupplier awaitingConnections, LongSupplier clock, ObjectMapper objectMapper) {
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burstNanos = nanosPerToken * burst;
+        this.maxClients = maxClients;
+        this.apiKeys = apiKeys;
+        this.exempt = exempt;
+        this.maxAwaitingConnections = maxAwaitingConnections;
+        this.awaitingConnections = awaitingConnections;
+        this.clock = clock;
+        this.objectMapper = objectMapper;
+        this.overflow = new AtomicLong(clock.getAsLong());
+        this.nextPurge = new AtomicLong(clock.getAsLong());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        if (exempt.test(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long waitNanos = acquire(client(request, apiKeys), cost(request));
+        if (waitNanos > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos, "Rate limit exceeded");
+            return;
+        }
+        if (awaitingConnections.getAsInt() >= maxAwaitingConnections) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1), "Database is overloaded");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * @return 0 if {@code cost} tokens were taken, otherwise how long to wait until they are available
+     */
+    long acquire(String client, int cost) {
+        long now = clock.getAsLong();
+        AtomicLong bucket = buckets.get(client);
+        if (bucket == null) {
+            bucket = newBucket(client, now);
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + cost * nanosPerToken;
+            long overdraft = next - now - burstNanos;
+            if (overdraft > 0) {
+                return overdraft;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong newBucket(String client, long now) {
+        if (buckets.size() >= maxClients) {
+            long purgeAt = nextPurge.get();
+            if (now - purgeAt >= 0 && nextPurge.compareAndSet(purgeAt, now + burstNanos)) {
+                buckets.values().removeIf(full -> full.get() - now <= 0);
+            }
+            if (buckets.size() >= maxClients) {
+                AtomicLong bucket = buckets.get(client);
+                return bucket != null ? bucket : overflow;
+            }
+        }
+        return buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+    }
+
+    static int cost(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (path.endsWith("/stream") || path.endsWith("/export")) {
+            return STREAM_COST;
+        }
+        if (path.endsWith("/bulk") || path.endsWith("/lookup") || request.getParameter("ids") != null) {
+            return BULK_COST;
+        }
+        if (request.getParameter("name") != null) {
+            return SEARCH_COST;
+        }
+        if (HttpMethod.GET.matches(request.getMethod()) && (path.endsWith("/users") || path.endsWith("/phones"))) {
+            return PAGE_COST;
+        }
+        return LOOKUP_COST;
+    }
+
+    static String client(HttpServletRequest request, Set<String> apiKeys) {
+        String apiKey = request.getHeader(API_KEY);
+        return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, long waitNanos, String message)
+            throws IOException {
+        long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ExceptionResponse(status, message));
+    }
+}
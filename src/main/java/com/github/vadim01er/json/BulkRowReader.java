@@ -0,0 +1,33 @@
+package com.github.vadim01er.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+@Component
+@RequiredArgsConstructor
+public class BulkRowReader {
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+    private final ObjectMapper objectMapper;
+
+    public <T> Iterator<T> read(InputStream body, MediaType contentType, Class<T> type) throws IOException {
+        if (TEXT_CSV.isCompatibleWith(contentType)) {
+            return CSV_MAPPER.readerFor(type)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(body);
+        }
+        return objectMapper.readerFor(type).readValues(body);
+    }
+}
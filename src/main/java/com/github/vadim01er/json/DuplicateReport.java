@@ -0,0 +1,75 @@
+package com.github.vadim01er.json;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+public class DuplicateReport {
+
+    private final Instant finishedAt;
+    private final long users;
+    private final long phones;
+    private final long elapsedMillis;
+    private final long rowsPerSecond;
+    private final int nameClusterCount;
+    private final int numberClusterCount;
+    private final List<NameCluster> nameClusters;
+    private final List<NumberCluster> numberClusters;
+
+    public DuplicateReport(long users, long phones, long elapsedNanos,
+                           List<NameCluster> nameClusters, List<NumberCluster> numberClusters) {
+        this.finishedAt = Instant.now();
+        this.users = users;
+        this.phones = phones;
+        this.elapsedMillis = elapsedNanos / 1_000_000;
+        this.rowsPerSecond = elapsedNanos > 0 ? (users + phones) * 1_000_000_000L / elapsedNanos : users + phones;
+        this.nameClusterCount = nameClusters.size();
+        this.numberClusterCount = numberClusters.size();
+        this.nameClusters = nameClusters;
+        this.numberClusters = numberClusters;
+    }
+
+    private DuplicateReport(DuplicateReport report, int limit) {
+        this.finishedAt = report.finishedAt;
+        this.users = report.users;
+        this.phones = report.phones;
+        this.elapsedMillis = report.elapsedMillis;
+        this.rowsPerSecond = report.rowsPerSecond;
+        this.nameClusterCount = report.nameClusterCount;
+        this.numberClusterCount = report.numberClusterCount;
+        this.nameClusters = report.nameClusters.subList(0, Math.min(limit, report.nameClusters.size()));
+        this.numberClusters = report.numberClusters.subList(0, Math.min(limit, report.numberClusters.size()));
+    }
+
+    /**
+     * @return the same report listing at most {@code limit} clusters of each kind, largest first
+     */
+    public DuplicateReport limit(int limit) {
+        return new DuplicateReport(this, limit);
+    }
+
+    /**
+     * Users whose names have the same {@code name} key.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class NameCluster {
+        private String name;
+        private List<Long> userIds;
+    }
+
+    /**
+     * Phones with the same normalized {@code number}, and the distinct users holding them.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class NumberCluster {
+        private long number;
+        private List<Long> phoneIds;
+        private List<Long> userIds;
+    }
+}
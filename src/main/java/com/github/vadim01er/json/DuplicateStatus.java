@@ -0,0 +1,12 @@
+package com.github.vadim01er.json;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DuplicateStatus {
+    private boolean running;
+    private DuplicateReport scan;
+    private MergeReport merge;
+}
@@ -0,0 +1,48 @@
+package com.github.vadim01er.json;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+public class ImportReport {
+
+    private static final int MAX_ERRORS = 1000;
+
+    private int received;
+    private int imported;
+    private int failed;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void received() {
+        received++;
+    }
+
+    public void imported(int rows) {
+        imported += rows;
+    }
+
+    public void fail(int row, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public void finish(long elapsedNanos) {
+        elapsedMillis = elapsedNanos / 1_000_000;
+        rowsPerSecond = elapsedNanos > 0 ? imported * 1_000_000_000L / elapsedNanos : imported;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private int row;
+        private String message;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.vadim01er.json;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Batch lookup result: {@code response} is aligned with the requested keys, {@code missing} lists the keys not found.
+ */
+@Getter
+public class LookupJsonResponse extends ListJsonResponse {
+
+    private final List<?> missing;
+
+    public LookupJsonResponse(List<?> response, List<?> missing) {
+        super(response);
+        this.missing = missing;
+    }
+}
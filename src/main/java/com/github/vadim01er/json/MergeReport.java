@@ -0,0 +1,38 @@
+package com.github.vadim01er.json;
+
+import lombok.Getter;
+
+@Getter
+public class MergeReport {
+
+    private int batches;
+    private int usersMerged;
+    private int phonesMoved;
+    private int phonesDeleted;
+    private int skipped;
+    private long elapsedMillis;
+
+    public void merged(int users, int moved, int deleted) {
+        usersMerged += users;
+        phonesMoved += moved;
+        phonesDeleted += deleted;
+    }
+
+    public void add(MergeReport batch) {
+        batches++;
+        merged(batch.usersMerged, batch.phonesMoved, batch.phonesDeleted);
+        skipped += batch.skipped;
+    }
+
+    /**
+     * Counts clusters, or holders of repeated numbers, left alone because their users are being moved between
+     * shards or their batch failed.
+     */
+    public void skip(int clusters) {
+        skipped += clusters;
+    }
+
+    public void finish(long elapsedNanos) {
+        elapsedMillis = elapsedNanos / 1_000_000;
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.vadim01er.json;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class PageJsonResponse extends ListJsonResponse {
+
+    private final Long next;
+
+    public PageJsonResponse(List<?> response, Long next) {
+        super(response);
+        this.next = next;
+    }
+}
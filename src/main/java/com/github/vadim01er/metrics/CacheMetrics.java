@@ -0,0 +1,48 @@
+package com.github.vadim01er.metrics;
+
+import com.github.vadim01er.cache.LookupCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class CacheMetrics implements MeterBinder {
+
+    private final List<LookupCache<?, ?>> caches;
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        for (LookupCache<?, ?> cache : caches) {
+            String name = cache.getName();
+            Gauge.builder("phonebook.cache.size", cache, c -> c.stats().getSize())
+                    .tag("cache", name)
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.requests", cache, c -> c.stats().getHits())
+                    .tag("cache", name).tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.requests", cache, c -> c.stats().getSharedHits())
+                    .tag("cache", name).tag("result", "shared-hit")
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.requests", cache, c -> c.stats().getMisses())
+                    .tag("cache", name).tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.requests", cache, c -> c.stats().getCoalesced())
+                    .tag("cache", name).tag("result", "coalesced")
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.conditional", cache, c -> c.stats().getConditionalHits())
+                    .tag("cache", name).tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.conditional", cache, c -> c.stats().getConditionalMisses())
+                    .tag("cache", name).tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("phonebook.cache.evictions", cache, c -> c.stats().getEvictions())
+                    .tag("cache", name)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.vadim01er.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every repository call ({@code phonebook.repository}), records the number of rows it returned
+ * ({@code phonebook.repository.rows}) and logs calls slower than the configured threshold.
+ * The outcome tag is one of {@code success}, {@code conflict}, {@code timeout} and {@code error}; meters are built
+ * once per method and outcome.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RepositoryMetrics implements MethodInterceptor {
+
+    private final String repository;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final long slowQueryMillis;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String method = invocation.getMethod().getName();
+        long start = System.nanoTime();
+        String outcome = "success";
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            record(method, outcome, elapsed, result);
+            if (elapsed > TimeUnit.MILLISECONDS.toNanos(slowQueryMillis)) {
+                log.warn("Slow repository call {}.{} took {} ms", repository, method,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+    }
+
+    private void record(String method, String outcome, long elapsed, Object result) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        timers.computeIfAbsent(method + ' ' + outcome, key -> Timer.builder("phonebook.repository")
+                        .tag("repository", repository)
+                        .tag("method", method)
+                        .tag("outcome", outcome)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        long rows = rows(result);
+        if (rows >= 0) {
+            rowSummaries.computeIfAbsent(method, key -> DistributionSummary.builder("phonebook.repository.rows")
+                            .tag("repository", repository)
+                            .tag("method", method)
+                            .register(registry))
+                    .record(rows);
+        }
+    }
+
+    private static String outcome(Throwable e) {
+        if (e instanceof QueryTimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof ConcurrencyFailureException || e instanceof DataIntegrityViolationException) {
+            return "conflict";
+        }
+        return "error";
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Number || result instanceof Boolean) {
+            return -1;
+        }
+        return result == null ? 0 : 1;
+    }
+}
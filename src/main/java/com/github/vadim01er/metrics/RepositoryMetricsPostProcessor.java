@@ -0,0 +1,43 @@
+package com.github.vadim01er.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+
+@RequiredArgsConstructor
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    private static final String PACKAGE = "com.github.vadim01er.repository";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final long slowQueryMillis;
+
+    @Override
+    public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        Class<?> repository = repositoryInterface(bean);
+        if (repository == null) {
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(bean);
+        proxyFactory.addInterface(repository);
+        proxyFactory.addAdvice(new RepositoryMetrics(repository.getSimpleName(), meterRegistry, slowQueryMillis));
+        return proxyFactory.getProxy(repository.getClassLoader());
+    }
+
+    private static Class<?> repositoryInterface(Object bean) {
+        if (!(bean instanceof Repository)) {
+            return null;
+        }
+        for (Class<?> type : bean.getClass().getInterfaces()) {
+            if (Repository.class.isAssignableFrom(type) && type.getName().startsWith(PACKAGE)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
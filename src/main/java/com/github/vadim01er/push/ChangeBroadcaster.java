@@ -0,0 +1,319 @@
+package com.github.vadim01er.push;
+
+import com.github.vadim01er.entity.Change;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans change events out to server-sent-event subscribers of this node.
+ * Idle subscribers hold no thread: each one owns a bounded buffer in which repeated events for the same row
+ * coalesce to the latest, and a small dispatcher pool drains buffers that have something to send.
+ * Publishing only queues the batch of changed ids, with each event built once; the dispatcher threads fan it out,
+ * each to its own stripe of subscribers and in publishing order, so a write never waits for the subscribers.
+ * A subscriber whose buffer overflows, or whose oldest buffered event has waited longer than
+ * {@code slow-send-millis}, is evicted before anything more is sent, with a final {@code resync} event telling it
+ * to catch up from {@code GET /changes}. A send still blocked after {@code slow-send-millis} is cut off by a
+ * watchdog that completes the emitter, so a stuck socket holds a dispatcher thread for no longer than that.
+ */
+@Slf4j
+@Component
+public class ChangeBroadcaster {
+
+    private static final String RESYNC = "resync";
+    private static final String KEEP_ALIVE = "keep-alive";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final Stripe[] stripes;
+    private final ExecutorService dispatcher;
+    private final ScheduledExecutorService heartbeat;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final long slowSendMillis;
+
+    public ChangeBroadcaster(@Value("${phonebook.push.buffer-size:256}") int bufferSize,
+                             @Value("${phonebook.push.max-subscribers:50000}") int maxSubscribers,
+                             @Value("${phonebook.push.timeout-millis:1800000}") long timeoutMillis,
+                             @Value("${phonebook.push.slow-send-millis:2000}") long slowSendMillis,
+                             @Value("${phonebook.push.heartbeat-millis:15000}") long heartbeatMillis,
+                             @Value("${phonebook.push.dispatch-threads:4}") int dispatchThreads) {
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+        this.slowSendMillis = slowSendMillis;
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, daemon("push-dispatch"));
+        this.stripes = new Stripe[dispatchThreads];
+        for (int i = 0; i < dispatchThreads; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("push-heartbeat"));
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        long watchdogMillis = Math.max(slowSendMillis / 2, 1);
+        heartbeat.scheduleWithFixedDelay(this::cutOffStuckSends, watchdogMillis, watchdogMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the emitter to hand to MVC, or {@code null} if the node already holds the maximum of subscribers
+     */
+    public SseEmitter subscribe(Set<Change.Type> types) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Stripe stripe = stripes[Math.floorMod(nextStripe.getAndIncrement(), stripes.length)];
+        Subscriber subscriber = new Subscriber(emitter, types, stripe);
+        subscribers.add(subscriber);
+        stripe.subscribers.add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        return emitter;
+    }
+
+    public void publish(Change.Type type, Change.Operation operation, Collection<Long> ids) {
+        if (subscribers.isEmpty() || ids.isEmpty()) {
+            return;
+        }
+        Batch batch = new Batch(type, operation, ids);
+        for (Stripe stripe : stripes) {
+            if (!stripe.subscribers.isEmpty()) {
+                stripe.batches.add(batch);
+                schedule(stripe);
+            }
+        }
+    }
+
+    public int subscribers() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat = true;
+            schedule(subscriber);
+        }
+    }
+
+    private void cutOffStuckSends() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > TimeUnit.MILLISECONDS.toNanos(slowSendMillis)) {
+                remove(subscriber);
+                log.debug("Cutting off change subscriber stuck in a send");
+                subscriber.emitter.completeWithError(new TimeoutException("Send took over " + slowSendMillis + " ms"));
+            }
+        }
+    }
+
+    private void schedule(Stripe stripe) {
+        if (stripe.scheduled.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> fanOut(stripe));
+            } catch (RejectedExecutionException e) {
+                stripe.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Offers the queued batches, oldest first, to the subscribers of the stripe.
+     */
+    private void fanOut(Stripe stripe) {
+        try {
+            Batch batch;
+            while ((batch = stripe.batches.poll()) != null) {
+                for (Subscriber subscriber : stripe.subscribers) {
+                    if (subscriber.types.contains(batch.type)) {
+                        if (!subscriber.offer(batch)) {
+                            subscriber.evicted = true;
+                        }
+                        schedule(subscriber);
+                    }
+                }
+            }
+        } finally {
+            stripe.scheduled.set(false);
+        }
+        if (!stripe.batches.isEmpty()) {
+            schedule(stripe);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.scheduled.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            if (subscriber.evicted || subscriber.queuedFor(System.nanoTime())
+                    > TimeUnit.MILLISECONDS.toNanos(slowSendMillis)) {
+                evict(subscriber);
+                return;
+            }
+            List<ChangeEvent> batch = subscriber.take();
+            subscriber.sendingSince = System.nanoTime();
+            if (batch.isEmpty() && subscriber.heartbeat) {
+                subscriber.emitter.send(SseEmitter.event().comment(KEEP_ALIVE));
+            }
+            subscriber.heartbeat = false;
+            for (ChangeEvent event : batch) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name(event.getType().name().toLowerCase(Locale.ROOT))
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.sendingSince = 0;
+            subscriber.scheduled.set(false);
+        }
+        if (subscriber.hasPending()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void evict(Subscriber subscriber) {
+        remove(subscriber);
+        log.debug("Evicting slow change subscriber");
+        try {
+            subscriber.sendingSince = System.nanoTime();
+            subscriber.emitter.send(SseEmitter.event().name(RESYNC).data(RESYNC));
+            subscriber.emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.stripe.subscribers.remove(subscriber);
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The events of one {@link #publish} call and their coalescing keys.
+     */
+    private static final class Batch {
+        private final Change.Type type;
+        private final String[] keys;
+        private final ChangeEvent[] events;
+
+        private Batch(Change.Type type, Change.Operation operation, Collection<Long> ids) {
+            this.type = type;
+            this.keys = new String[ids.size()];
+            this.events = new ChangeEvent[ids.size()];
+            int i = 0;
+            for (Long id : ids) {
+                keys[i] = type.name() + ':' + id;
+                events[i++] = new ChangeEvent(type, id, operation);
+            }
+        }
+    }
+
+    /**
+     * A share of the subscribers that one dispatcher task at a time fans batches out to.
+     */
+    private static final class Stripe {
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Change.Type> types;
+        private final Stripe stripe;
+        private final LinkedHashMap<String, ChangeEvent> pending = new LinkedHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean heartbeat;
+        private volatile boolean evicted;
+        private volatile long sendingSince;
+        private long queuedSince;
+
+        private Subscriber(SseEmitter emitter, Set<Change.Type> types, Stripe stripe) {
+            this.emitter = emitter;
+            this.types = types;
+            this.stripe = stripe;
+        }
+
+        /**
+         * @return {@code false} if the buffer overflowed
+         */
+        private boolean offer(Batch batch) {
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    queuedSince = System.nanoTime();
+                }
+                for (int i = 0; i < batch.keys.length; i++) {
+                    if (pending.size() >= bufferSize && !pending.containsKey(batch.keys[i])) {
+                        return false;
+                    }
+                    pending.put(batch.keys[i], batch.events[i]);
+                }
+                return true;
+            }
+        }
+
+        private List<ChangeEvent> take() {
+            synchronized (pending) {
+                List<ChangeEvent> batch = new ArrayList<>(pending.values());
+                pending.clear();
+                return batch;
+            }
+        }
+
+        /**
+         * @return how long the oldest buffered event has been waiting, 0 if none
+         */
+        private long queuedFor(long now) {
+            synchronized (pending) {
+                return pending.isEmpty() ? 0 : now - queuedSince;
+            }
+        }
+
+        private boolean hasPending() {
+            synchronized (pending) {
+                return !pending.isEmpty() || evicted;
+            }
+        }
+    }
+}
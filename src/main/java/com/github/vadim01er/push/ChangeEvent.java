@@ -0,0 +1,16 @@
+package com.github.vadim01er.push;
+
+import com.github.vadim01er.entity.Change;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ChangeEvent {
+
+    private Change.Type type;
+
+    private long id;
+
+    private Change.Operation operation;
+}
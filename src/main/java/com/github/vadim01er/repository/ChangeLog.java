@@ -0,0 +1,59 @@
+package com.github.vadim01er.repository;
+
+import com.github.vadim01er.entity.Change;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Appends to the {@code changes} table.
+ * Sequence numbers come from an identity column and entries are written by the last statement before a commit:
+ * live writes record them in the same statement as their rows, imports in a short transaction of their own once a
+ * chunk has committed. An entry is therefore stamped at most a commit's latency before it becomes visible, and the
+ * feed hides entries younger than a settle window so that it does not return a sequence number ahead of one that is
+ * still uncommitted. Callers must not stamp entries before other work in the same transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChangeLog {
+
+    private static final String INSERT = "INSERT INTO changes (entity_type, entity_id, operation, changed_at) ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void record(Change.Type type, Change.Operation operation, Collection<Long> ids) {
+        record(type, operation, ids, now());
+    }
+
+    public void record(Change.Type type, Change.Operation operation, Collection<Long> ids, Timestamp now) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT + "VALUES (?, ?, ?, ?)", ids, ids.size(), (ps, id) -> {
+            ps.setString(1, type.name());
+            ps.setLong(2, id);
+            ps.setString(3, operation.name());
+            ps.setTimestamp(4, now);
+        });
+    }
+
+    /**
+     * A data-modifying CTE recording every {@code idColumn} of {@code source}; binds one timestamp parameter.
+     */
+    static String recordFrom(String name, Change.Type type, Change.Operation operation,
+                             String idColumn, String source) {
+        return name + " AS (" + INSERT + "SELECT '" + type + "', " + idColumn + ", '" + operation + "', ? FROM "
+                + source + ")";
+    }
+
+    /**
+     * @return the timestamp one write stamps its rows and change entries with
+     */
+    public static Timestamp now() {
+        return Timestamp.from(Instant.now());
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.vadim01er.repository;
+
+import com.github.vadim01er.entity.Change;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ChangeRepo extends JpaRepository<Change, Long> {
+
+    List<Change> findByIdGreaterThanAndChangedAtBeforeOrderById(long id, Instant changedAt, Pageable pageable);
+
+    @Query("select coalesce(max(c.id), 0) from Change c where c.changedAt < :changedAt")
+    long findLastIdBefore(@Param("changedAt") Instant changedAt);
+}
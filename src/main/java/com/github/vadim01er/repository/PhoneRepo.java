@@ -1,11 +1,62 @@
 package com.github.vadim01er.repository;
 
 import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneRow;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface PhoneRepo extends JpaRepository<Phone, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface PhoneRepo extends JpaRepository<Phone, Long>, PhoneRepoCustom {
 
     List<Phone> findByNumber(String number);
+
+    @Transactional(readOnly = true)
+    List<Phone> findByNormalizedNumber(Long normalizedNumber);
+
+    @Transactional(readOnly = true)
+    List<Phone> findByNormalizedNumberIn(Collection<Long> normalizedNumbers);
+
+    @Query("select p.id, p.number from Phone p where p.normalizedNumber is null and p.id > :after order by p.id")
+    List<Object[]> findUnnormalizedAfter(@Param("after") long after, Pageable pageable);
+
+    List<Phone> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    @Query("select new com.github.vadim01er.entity.PhoneRow(p.id, p.user.id, p.name, p.number, "
+            + "p.normalizedNumber, p.normalizedNumber, p.version) from Phone p where p.id in :ids")
+    List<PhoneRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.github.vadim01er.entity.PhoneRow(p.id, p.user.id, p.name, p.number, "
+            + "p.normalizedNumber, p.normalizedNumber, p.version) from Phone p where p.id > :after order by p.id")
+    List<PhoneRow> findRowPage(@Param("after") long after, Pageable pageable);
+
+    @Query("select new com.github.vadim01er.entity.PhoneRow(p.id, p.user.id, p.name, p.number, "
+            + "p.normalizedNumber, p.normalizedNumber, p.version) from Phone p where p.user.id in :userIds")
+    List<PhoneRow> findRowsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Phone> findLockedByUserIdInOrderById(Collection<Long> userIds);
+
+    @Query("select p.version from Phone p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select p from Phone p order by p.id")
+    Stream<Phone> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("select p.id, p.normalizedNumber from Phone p where p.normalizedNumber is not null")
+    Stream<Object[]> streamNormalizedNumbers();
 }
@@ -0,0 +1,22 @@
+package com.github.vadim01er.repository;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneRow;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface PhoneRepoCustom {
+
+    Phone insert(Phone phone);
+
+    Optional<PhoneRow> deleteReturning(long id);
+
+    List<PhoneRow> deleteAllReturning(Collection<Long> ids);
+
+    Optional<PhoneRow> updateReturning(long id, String name, String number, Long normalizedNumber,
+                                       Long expectedVersion);
+
+    List<PhoneRow> reassignReturning(Collection<Long> fromUserIds, long toUserId);
+}
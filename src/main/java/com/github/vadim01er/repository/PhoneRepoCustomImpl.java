@@ -0,0 +1,230 @@
+package com.github.vadim01er.repository;
+
+import com.github.vadim01er.config.DatabasePlatform;
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneRow;
+import com.github.vadim01er.entity.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Single-statement phone writes. On PostgreSQL each method is one {@code DELETE/UPDATE ... RETURNING}
+ * round trip; elsewhere the affected rows are read and then changed by one set-based JPQL statement.
+ * An insert goes through the entity manager, for its generated id, followed by one statement for the rest.
+ * Every write also bumps the owning user's version, since the user representation embeds its phones,
+ * and records both in the change log. Reassigning phones bumps only their new owner, since it is used to merge
+ * users that are deleted right after.
+ */
+@RequiredArgsConstructor
+@Transactional
+public class PhoneRepoCustomImpl implements PhoneRepoCustom {
+
+    static final RowMapper<PhoneRow> ROW_MAPPER = (rs, rowNum) -> new PhoneRow(
+            rs.getLong("phone_id"),
+            rs.getLong("user_id"),
+            rs.getString("name"),
+            rs.getString("number"),
+            rs.getObject("normalized_number", Long.class),
+            rs.getObject("previous_normalized_number", Long.class),
+            rs.getLong("version"));
+
+    private static final String BUMP_USERS = "bumped AS (UPDATE users u SET version = u.version + 1, modified_at = ? "
+            + "WHERE u.user_id IN (SELECT user_id FROM changed) RETURNING u.user_id), "
+            + ChangeLog.recordFrom("recorded_users", Change.Type.USER, Change.Operation.UPSERT, "user_id", "bumped")
+            + ", ";
+
+    private static final String SELECT_ROWS = "select new com.github.vadim01er.entity.PhoneRow("
+            + "p.id, p.user.id, p.name, p.number, p.normalizedNumber, p.normalizedNumber, p.version) from Phone p ";
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final ChangeLog changeLog;
+
+    @Override
+    public Phone insert(Phone phone) {
+        entityManager.persist(phone);
+        entityManager.flush();
+        long userId = phone.getUser().getId();
+        Timestamp now = ChangeLog.now();
+        if (databasePlatform.isPostgres()) {
+            jdbcTemplate.queryForObject("WITH changed AS (SELECT CAST(? AS bigint) AS phone_id, "
+                            + "CAST(? AS bigint) AS user_id), "
+                            + BUMP_USERS
+                            + ChangeLog.recordFrom("recorded_phones", Change.Type.PHONE, Change.Operation.UPSERT,
+                                    "phone_id", "changed")
+                            + " SELECT count(*) FROM changed",
+                    Long.class, phone.getId(), userId, now, now, now);
+            return phone;
+        }
+        bumpUsers(Collections.singleton(userId), now);
+        changeLog.record(Change.Type.PHONE, Change.Operation.UPSERT, Collections.singleton(phone.getId()), now);
+        changeLog.record(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(userId), now);
+        return phone;
+    }
+
+    @Override
+    public Optional<PhoneRow> deleteReturning(long id) {
+        List<PhoneRow> rows = deleteAllReturning(Collections.singletonList(id));
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public List<PhoneRow> deleteAllReturning(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Timestamp now = ChangeLog.now();
+        if (databasePlatform.isPostgres()) {
+            return jdbcTemplate.query("WITH changed AS (DELETE FROM phone WHERE phone_id = ANY(?) "
+                            + "RETURNING phone_id, user_id, name, number, normalized_number, version), "
+                            + BUMP_USERS
+                            + ChangeLog.recordFrom("recorded_phones", Change.Type.PHONE, Change.Operation.DELETE,
+                                    "phone_id", "changed")
+                            + " SELECT *, normalized_number AS previous_normalized_number FROM changed",
+                    ps -> {
+                        ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+                        ps.setTimestamp(2, now);
+                        ps.setTimestamp(3, now);
+                        ps.setTimestamp(4, now);
+                    },
+                    ROW_MAPPER);
+        }
+        List<PhoneRow> rows = entityManager.createQuery(SELECT_ROWS + "where p.id in :ids", PhoneRow.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        if (!rows.isEmpty()) {
+            entityManager.createQuery("delete from Phone p where p.id in :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            Set<Long> userIds = rows.stream().map(PhoneRow::getUserId).collect(Collectors.toSet());
+            bumpUsers(userIds, now);
+            changeLog.record(Change.Type.PHONE, Change.Operation.DELETE,
+                    rows.stream().map(PhoneRow::getId).collect(Collectors.toList()), now);
+            changeLog.record(Change.Type.USER, Change.Operation.UPSERT, userIds, now);
+        }
+        return rows;
+    }
+
+    @Override
+    public Optional<PhoneRow> updateReturning(long id, String name, String number, Long normalizedNumber,
+                                              Long expectedVersion) {
+        Timestamp now = ChangeLog.now();
+        if (databasePlatform.isPostgres()) {
+            List<PhoneRow> rows = jdbcTemplate.query("WITH old AS (SELECT phone_id, normalized_number FROM phone "
+                            + "WHERE phone_id = ? AND (?::bigint IS NULL OR version = ?) FOR UPDATE), "
+                            + "changed AS (UPDATE phone p SET name = coalesce(?, p.name), "
+                            + "number = coalesce(?, p.number), "
+                            + "normalized_number = CASE WHEN ? THEN ? ELSE p.normalized_number END, "
+                            + "version = p.version + 1, modified_at = ? "
+                            + "FROM old WHERE p.phone_id = old.phone_id "
+                            + "RETURNING p.phone_id, p.user_id, p.name, p.number, p.normalized_number, "
+                            + "old.normalized_number AS previous_normalized_number, p.version), "
+                            + BUMP_USERS
+                            + ChangeLog.recordFrom("recorded_phones", Change.Type.PHONE, Change.Operation.UPSERT,
+                                    "phone_id", "changed")
+                            + " SELECT * FROM changed",
+                    ROW_MAPPER, id, expectedVersion, expectedVersion, name, number, number != null,
+                    normalizedNumber, now, now, now, now);
+            return rows.stream().findFirst();
+        }
+        List<PhoneRow> rows = entityManager.createQuery(SELECT_ROWS + "where p.id = :id", PhoneRow.class)
+                .setParameter("id", id)
+                .getResultList();
+        if (rows.isEmpty() || expectedVersion != null && rows.get(0).getVersion() != expectedVersion) {
+            return Optional.empty();
+        }
+        PhoneRow row = rows.get(0);
+        if (name != null) {
+            row.setName(name);
+        }
+        if (number != null) {
+            row.setNumber(number);
+            row.setNormalizedNumber(normalizedNumber);
+        }
+        int updated = entityManager.createQuery("update Phone p set p.name = :name, p.number = :number, "
+                        + "p.normalizedNumber = :normalizedNumber, p.version = p.version + 1, p.modifiedAt = :now "
+                        + "where p.id = :id and p.version = :version")
+                .setParameter("now", now.toInstant())
+                .setParameter("name", row.getName())
+                .setParameter("number", row.getNumber())
+                .setParameter("normalizedNumber", row.getNormalizedNumber())
+                .setParameter("id", id)
+                .setParameter("version", row.getVersion())
+                .executeUpdate();
+        if (updated == 0) {
+            return Optional.empty();
+        }
+        row.setVersion(row.getVersion() + 1);
+        bumpUsers(Collections.singleton(row.getUserId()), now);
+        changeLog.record(Change.Type.PHONE, Change.Operation.UPSERT, Collections.singleton(id), now);
+        changeLog.record(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(row.getUserId()), now);
+        return Optional.of(row);
+    }
+
+    @Override
+    public List<PhoneRow> reassignReturning(Collection<Long> fromUserIds, long toUserId) {
+        if (fromUserIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Timestamp now = ChangeLog.now();
+        if (databasePlatform.isPostgres()) {
+            return jdbcTemplate.query("WITH changed AS (UPDATE phone SET user_id = ?, version = version + 1, "
+                            + "modified_at = ? WHERE user_id = ANY(?) "
+                            + "RETURNING phone_id, user_id, name, number, normalized_number, version), "
+                            + BUMP_USERS
+                            + ChangeLog.recordFrom("recorded_phones", Change.Type.PHONE, Change.Operation.UPSERT,
+                                    "phone_id", "changed")
+                            + " SELECT *, normalized_number AS previous_normalized_number FROM changed",
+                    ps -> {
+                        ps.setLong(1, toUserId);
+                        ps.setTimestamp(2, now);
+                        ps.setArray(3, ps.getConnection().createArrayOf("bigint", fromUserIds.toArray()));
+                        ps.setTimestamp(4, now);
+                        ps.setTimestamp(5, now);
+                        ps.setTimestamp(6, now);
+                    },
+                    ROW_MAPPER);
+        }
+        List<PhoneRow> rows = entityManager.createQuery(SELECT_ROWS + "where p.user.id in :ids", PhoneRow.class)
+                .setParameter("ids", fromUserIds)
+                .getResultList();
+        if (!rows.isEmpty()) {
+            entityManager.createQuery("update Phone p set p.user = :user, p.version = p.version + 1, "
+                            + "p.modifiedAt = :now where p.user.id in :ids")
+                    .setParameter("user", entityManager.getReference(User.class, toUserId))
+                    .setParameter("now", now.toInstant())
+                    .setParameter("ids", fromUserIds)
+                    .executeUpdate();
+            rows.forEach(row -> {
+                row.setUserId(toUserId);
+                row.setVersion(row.getVersion() + 1);
+            });
+            bumpUsers(Collections.singleton(toUserId), now);
+            changeLog.record(Change.Type.PHONE, Change.Operation.UPSERT,
+                    rows.stream().map(PhoneRow::getId).collect(Collectors.toList()), now);
+            changeLog.record(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(toUserId), now);
+        }
+        return rows;
+    }
+
+    private void bumpUsers(Set<Long> userIds, Timestamp now) {
+        entityManager.createQuery("update User u set u.version = u.version + 1, u.modifiedAt = :now "
+                        + "where u.id in :ids")
+                .setParameter("now", now.toInstant())
+                .setParameter("ids", userIds)
+                .executeUpdate();
+    }
+}
@@ -1,14 +1,74 @@
 package com.github.vadim01er.repository;
 
 import com.github.vadim01er.entity.User;
+import com.github.vadim01er.entity.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface UserRepo extends JpaRepository<User, Long> {
+public interface UserRepo extends JpaRepository<User, Long>, UserRepoCustom {
 
     List<User> findByName(String name);
 
+    List<User> findByNameContainingIgnoreCaseAndIdGreaterThanOrderById(String name, long id, Pageable pageable);
+
+    List<User> findByNameStartingWithIgnoreCaseAndIdGreaterThanOrderById(String name, long id, Pageable pageable);
+
+    @Query("select new com.github.vadim01er.entity.UserSummary(u.id, u.name) from User u")
+    List<UserSummary> findAllSummaries();
+
+    List<User> findByIdGreaterThanOrderById(long id, Pageable pageable);
+
+    @Query("select new com.github.vadim01er.entity.UserSummary(u.id, u.name, u.version) from User u "
+            + "where u.id > :after order by u.id")
+    List<UserSummary> findSummaryPage(@Param("after") long after, Pageable pageable);
+
+    @Query("select u.id from User u where u.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @EntityGraph(attributePaths = "phone")
+    Optional<User> findWithPhoneById(long id);
+
+    @Transactional(readOnly = true)
+    @EntityGraph(attributePaths = "phone")
+    List<User> findWithPhoneByIdIn(Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.github.vadim01er.entity.UserSummary(u.id, u.name) from User u order by u.id")
+    Stream<UserSummary> streamSummaries();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<User> findLockedByIdInOrderById(Collection<Long> ids);
+
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.version = u.version + 1, u.modifiedAt = :now where u.id in :ids")
+    int bumpVersions(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Query("select new com.github.vadim01er.entity.UserSummary(u.id, u.name, u.version) from User u "
+            + "where u.id in :ids")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,13 @@
+package com.github.vadim01er.repository;
+
+import com.github.vadim01er.entity.PhoneRow;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UserRepoCustom {
+
+    Optional<List<PhoneRow>> deleteCascadeReturning(long id);
+
+    Optional<Long> updateNameReturningVersion(long id, String name, Long expectedVersion);
+}
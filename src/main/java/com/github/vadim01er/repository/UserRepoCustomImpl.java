@@ -0,0 +1,109 @@
+package com.github.vadim01er.repository;
+
+import com.github.vadim01er.config.DatabasePlatform;
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.PhoneRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes a user together with its phones. On PostgreSQL both deletes run as one statement
+ * (two data-modifying CTEs); the returned rows are the removed phones, empty if the user had none.
+ * Renames are a single {@code UPDATE ... RETURNING version}, optionally guarded by the expected version.
+ */
+@RequiredArgsConstructor
+@Transactional
+public class UserRepoCustomImpl implements UserRepoCustom {
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final ChangeLog changeLog;
+
+    @Override
+    public Optional<List<PhoneRow>> deleteCascadeReturning(long id) {
+        Timestamp now = ChangeLog.now();
+        if (databasePlatform.isPostgres()) {
+            List<PhoneRow> rows = jdbcTemplate.query("WITH deleted_phones AS ("
+                            + "DELETE FROM phone WHERE user_id = ? "
+                            + "RETURNING phone_id, name, number, normalized_number, version), "
+                            + "deleted_user AS (DELETE FROM users WHERE user_id = ? RETURNING user_id), "
+                            + ChangeLog.recordFrom("recorded_phones", Change.Type.PHONE, Change.Operation.DELETE,
+                                    "phone_id", "deleted_phones") + ", "
+                            + ChangeLog.recordFrom("recorded_user", Change.Type.USER, Change.Operation.DELETE,
+                                    "user_id", "deleted_user")
+                            + " SELECT p.phone_id, u.user_id, p.name, p.number, p.normalized_number, "
+                            + "p.normalized_number AS previous_normalized_number, p.version "
+                            + "FROM deleted_user u LEFT JOIN deleted_phones p ON true",
+                    PhoneRepoCustomImpl.ROW_MAPPER, id, id, now, now);
+            if (rows.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(rows.stream()
+                    .filter(row -> row.getId() != 0)
+                    .collect(Collectors.toList()));
+        }
+        List<PhoneRow> phones = entityManager.createQuery("select new com.github.vadim01er.entity.PhoneRow("
+                        + "p.id, p.user.id, p.name, p.number, p.normalizedNumber, p.normalizedNumber, p.version) "
+                        + "from Phone p where p.user.id = :id", PhoneRow.class)
+                .setParameter("id", id)
+                .getResultList();
+        if (!phones.isEmpty()) {
+            entityManager.createQuery("delete from Phone p where p.user.id = :id")
+                    .setParameter("id", id)
+                    .executeUpdate();
+        }
+        int deleted = entityManager.createQuery("delete from User u where u.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+        if (deleted == 0) {
+            return Optional.empty();
+        }
+        changeLog.record(Change.Type.PHONE, Change.Operation.DELETE,
+                phones.stream().map(PhoneRow::getId).collect(Collectors.toList()), now);
+        changeLog.record(Change.Type.USER, Change.Operation.DELETE, Collections.singleton(id), now);
+        return Optional.of(phones);
+    }
+
+    @Override
+    public Optional<Long> updateNameReturningVersion(long id, String name, Long expectedVersion) {
+        Timestamp now = ChangeLog.now();
+        if (databasePlatform.isPostgres()) {
+            List<Long> versions = jdbcTemplate.queryForList("WITH changed AS (UPDATE users "
+                            + "SET name = ?, version = version + 1, modified_at = ? "
+                            + "WHERE user_id = ? AND (?::bigint IS NULL OR version = ?) RETURNING user_id, version), "
+                            + ChangeLog.recordFrom("recorded", Change.Type.USER, Change.Operation.UPSERT,
+                                    "user_id", "changed")
+                            + " SELECT version FROM changed",
+                    Long.class, name, now, id, expectedVersion, expectedVersion, now);
+            return versions.stream().findFirst();
+        }
+        String update = "update User u set u.name = :name, u.version = u.version + 1, u.modifiedAt = :now "
+                + "where u.id = :id";
+        Query query = entityManager.createQuery(expectedVersion == null
+                        ? update
+                        : update + " and u.version = :version")
+                .setParameter("name", name)
+                .setParameter("now", now.toInstant())
+                .setParameter("id", id);
+        if (expectedVersion != null) {
+            query.setParameter("version", expectedVersion);
+        }
+        if (query.executeUpdate() == 0) {
+            return Optional.empty();
+        }
+        changeLog.record(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(id), now);
+        return Optional.of(entityManager.createQuery("select u.version from User u where u.id = :id", Long.class)
+                .setParameter("id", id)
+                .getSingleResult());
+    }
+}
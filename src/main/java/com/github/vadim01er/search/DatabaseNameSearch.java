@@ -0,0 +1,80 @@
+package com.github.vadim01er.search;
+
+import com.github.vadim01er.config.DatabasePlatform;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pushes name search down to the database as {@code upper(name) LIKE upper(?)}.
+ * On PostgreSQL a pg_trgm GIN index over {@code upper(name)} is created so that the pattern is index-assisted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "phonebook.search.mode", havingValue = "database")
+public class DatabaseNameSearch implements NameSearch {
+
+    private final UserRepo userRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+    private final ShardRouter shardRouter;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createTrigramIndex() {
+        try {
+            if (!databasePlatform.isPostgres()) {
+                return;
+            }
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS users_name_trgm_idx "
+                    + "ON users USING gin (upper(name) gin_trgm_ops)");
+        } catch (DataAccessException e) {
+            log.warn("pg_trgm index on users.name is not available, name search will scan", e);
+        }
+    }
+
+    @Override
+    public List<User> search(String query, boolean prefix, long after, int limit) {
+        return page(userRepo, shardRouter, query, prefix, after, limit);
+    }
+
+    /**
+     * One keyset page of the {@code LIKE} search; also the trigram index's fallback for queries too short to index.
+     */
+    static List<User> page(UserRepo userRepo, ShardRouter shardRouter, String query, boolean prefix, long after,
+                           int limit) {
+        return shardRouter.merge(() -> {
+            List<User> users = prefix
+                    ? userRepo.findByNameStartingWithIgnoreCaseAndIdGreaterThanOrderById(query, after,
+                    PageRequest.of(0, limit))
+                    : userRepo.findByNameContainingIgnoreCaseAndIdGreaterThanOrderById(query, after,
+                    PageRequest.of(0, limit));
+            if (shardRouter.isSharded()) {
+                users.forEach(user -> Hibernate.initialize(user.getPhone()));
+            }
+            return users;
+        }, User::getId, Comparator.comparingLong(User::getId), limit);
+    }
+
+    @Override
+    public void index(long id, String name) {
+    }
+
+    @Override
+    public void remove(long id) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.vadim01er.search;
+
+import com.github.vadim01er.entity.User;
+
+import java.util.List;
+
+public interface NameSearch {
+
+    /**
+     * @return up to {@code limit} matching users with ids above {@code after}, in id order
+     */
+    List<User> search(String query, boolean prefix, long after, int limit);
+
+    void index(long id, String name);
+
+    void remove(long id);
+}
@@ -0,0 +1,190 @@
+package com.github.vadim01er.search;
+
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.sharding.ShardRouter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Type-ahead over normalized phone numbers.
+ * Numbers live in a sorted primitive {@code long[]} (with a parallel id array); a prefix of {@code k} digits
+ * selects, for every total length {@code d}, the contiguous range {@code [p * 10^(d-k), (p + 1) * 10^(d-k))},
+ * found by binary search. Writes go to a small sorted delta that is merged into the arrays once it grows.
+ */
+@Component
+@RequiredArgsConstructor
+public class NumberSuggester {
+
+    private static final int MAX_DIGITS = 18;
+    private static final int MERGE_THRESHOLD = 4096;
+    private static final long[] POWERS = new long[MAX_DIGITS + 1];
+    private static final Comparator<Suggestion> ORDER = Comparator.comparingLong(Suggestion::getNumber)
+            .thenComparingLong(Suggestion::getId);
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private final PhoneRepo phoneRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    private volatile State state = new State(new long[0], new long[0]);
+
+    @PostConstruct
+    public void load() {
+        List<Suggestion> all = shardRouter.fanOut(() -> transactionTemplate.execute(status -> {
+            try (Stream<Object[]> rows = phoneRepo.streamNormalizedNumbers()) {
+                return rows.map(row -> new Suggestion((Long) row[0], (Long) row[1])).collect(Collectors.toList());
+            }
+        }));
+        all.sort(ORDER);
+        if (shardRouter.isSharded()) {
+            all = new ArrayList<>(new LinkedHashSet<>(all));
+        }
+        long[] numbers = new long[all.size()];
+        long[] ids = new long[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            numbers[i] = all.get(i).getNumber();
+            ids[i] = all.get(i).getId();
+        }
+        state = new State(numbers, ids);
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        State current = state;
+        long value = 0;
+        int length = 0;
+        for (int i = 0; i < prefix.length() && length <= MAX_DIGITS; i++) {
+            char c = prefix.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                length++;
+            }
+        }
+        if (value == 0 || length > MAX_DIGITS || value < POWERS[length - 1]) {
+            return Collections.emptyList();
+        }
+        List<Suggestion> result = new ArrayList<>(limit);
+        for (int digits = length; digits <= MAX_DIGITS && result.size() < limit; digits++) {
+            long scale = POWERS[digits - length];
+            long from = value * scale;
+            long to = (value + 1) * scale;
+            current.collect(from, to, limit - result.size(), result);
+        }
+        return result;
+    }
+
+    public synchronized void add(long id, Long number) {
+        if (number == null) {
+            return;
+        }
+        state.added.add(new Suggestion(id, number));
+        mergeIfNeeded();
+    }
+
+    public synchronized void remove(long id, Long number) {
+        if (number == null) {
+            return;
+        }
+        if (!state.added.remove(new Suggestion(id, number))) {
+            state.removed.add(id);
+        }
+        mergeIfNeeded();
+    }
+
+    private void mergeIfNeeded() {
+        State current = state;
+        if (current.added.size() + current.removed.size() < MERGE_THRESHOLD) {
+            return;
+        }
+        int capacity = current.numbers.length + current.added.size();
+        long[] numbers = new long[capacity];
+        long[] ids = new long[capacity];
+        int size = 0;
+        Iterator<Suggestion> added = current.added.iterator();
+        Suggestion next = added.hasNext() ? added.next() : null;
+        for (int i = 0; i < current.numbers.length; i++) {
+            while (next != null && (next.number < current.numbers[i]
+                    || next.number == current.numbers[i] && next.id < current.ids[i])) {
+                numbers[size] = next.number;
+                ids[size++] = next.id;
+                next = added.hasNext() ? added.next() : null;
+            }
+            if (!current.removed.contains(current.ids[i])) {
+                numbers[size] = current.numbers[i];
+                ids[size++] = current.ids[i];
+            }
+        }
+        while (next != null) {
+            numbers[size] = next.number;
+            ids[size++] = next.id;
+            next = added.hasNext() ? added.next() : null;
+        }
+        state = new State(Arrays.copyOf(numbers, size), Arrays.copyOf(ids, size));
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Suggestion {
+        private long id;
+        private long number;
+    }
+
+    private static final class State {
+        private final long[] numbers;
+        private final long[] ids;
+        private final NavigableSet<Suggestion> added = new ConcurrentSkipListSet<>(ORDER);
+        private final Set<Long> removed = ConcurrentHashMap.newKeySet();
+
+        private State(long[] numbers, long[] ids) {
+            this.numbers = numbers;
+            this.ids = ids;
+        }
+
+        private void collect(long from, long to, int limit, List<Suggestion> result) {
+            List<Suggestion> range = new ArrayList<>();
+            int i = lowerBound(from);
+            while (i < numbers.length && numbers[i] < to && range.size() < limit) {
+                if (!removed.contains(ids[i])) {
+                    range.add(new Suggestion(ids[i], numbers[i]));
+                }
+                i++;
+            }
+            Iterator<Suggestion> pending = added.subSet(new Suggestion(Long.MIN_VALUE, from), true,
+                    new Suggestion(Long.MIN_VALUE, to), false).iterator();
+            for (int taken = 0; taken < limit && pending.hasNext(); taken++) {
+                range.add(pending.next());
+            }
+            range.sort(ORDER);
+            result.addAll(range.subList(0, Math.min(limit, range.size())));
+        }
+
+        private int lowerBound(long number) {
+            int low = 0;
+            int high = numbers.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (numbers[mid] < number) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
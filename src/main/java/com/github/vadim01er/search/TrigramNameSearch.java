@@ -0,0 +1,138 @@
+package com.github.vadim01er.search;
+
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.entity.UserSummary;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-process trigram index over {@link User#getName()}.
+ * Queries of three or more characters only touch the ids sharing the rarest query trigram, keeping the first
+ * {@code limit} matches above {@code after}, which are then loaded from the database in chunks; shorter queries
+ * have no trigram to narrow them down and go to the database as a paged {@code LIKE} search.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "phonebook.search.mode", havingValue = "trigram", matchIfMissing = true)
+public class TrigramNameSearch implements NameSearch {
+
+    private static final int GRAM = 3;
+    private static final int LOAD_CHUNK = 500;
+
+    private final UserRepo userRepo;
+    private final ShardRouter shardRouter;
+
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        for (UserSummary user : shardRouter.fanOut(userRepo::findAllSummaries, UserSummary::getId)) {
+            index(user.getId(), user.getName());
+        }
+    }
+
+    @Override
+    public List<User> search(String query, boolean prefix, long after, int limit) {
+        String needle = normalize(query);
+        if (needle.length() < GRAM) {
+            return DatabaseNameSearch.page(userRepo, shardRouter, query, prefix, after, limit);
+        }
+        TreeSet<Long> ids = new TreeSet<>();
+        for (Long id : candidates(needle, prefix)) {
+            if (id <= after || ids.size() == limit && id > ids.last()) {
+                continue;
+            }
+            String name = names.get(id);
+            if (name != null && matches(name, needle, prefix)) {
+                ids.add(id);
+                if (ids.size() > limit) {
+                    ids.pollLast();
+                }
+            }
+        }
+        List<Long> page = new ArrayList<>(ids);
+        List<User> users = new ArrayList<>(page.size());
+        for (int from = 0; from < page.size(); from += LOAD_CHUNK) {
+            users.addAll(load(page.subList(from, Math.min(from + LOAD_CHUNK, page.size()))));
+        }
+        users.sort(Comparator.comparingLong(User::getId));
+        return users;
+    }
+
+    @Override
+    public synchronized void index(long id, String name) {
+        remove(id);
+        String normalized = normalize(name);
+        names.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    @Override
+    public synchronized void remove(long id) {
+        String old = names.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String gram : grams(old)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private Collection<User> load(List<Long> ids) {
+        return shardRouter.isSharded()
+                ? shardRouter.partition(ids, userRepo::findWithPhoneByIdIn).stream()
+                        .collect(Collectors.toMap(User::getId, user -> user, (first, second) -> first))
+                        .values()
+                : userRepo.findAllById(ids);
+    }
+
+    private Set<Long> candidates(String needle, boolean prefix) {
+        if (prefix) {
+            return postings.getOrDefault(needle.substring(0, GRAM), Collections.emptySet());
+        }
+        Set<Long> smallest = null;
+        for (String gram : grams(needle)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest == null ? Collections.emptySet() : smallest;
+    }
+
+    private static boolean matches(String name, String needle, boolean prefix) {
+        return prefix ? name.startsWith(needle) : name.contains(needle);
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.vadim01er.service;
+
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.ChangeEntry;
+import com.github.vadim01er.entity.PhoneRow;
+import com.github.vadim01er.entity.UserSummary;
+import com.github.vadim01er.repository.ChangeRepo;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.sharding.ShardRouter;
+import com.github.vadim01er.sharding.ShardUnsupportedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the change feed. Upserts carry the current state of the row (users as summaries, phones with their
+ * owner id), loaded with one query per entity type and page; {@code data} is {@code null} when the row has
+ * been deleted since, in which case its tombstone follows later in the feed.
+ * Ordering against uncommitted writes relies on the settle window, see {@link com.github.vadim01er.repository.ChangeLog}.
+ * Sequence numbers are per database, so the feed refuses to serve a sharded phone book.
+ */
+@Service
+public class ChangeService {
+
+    private static final int STREAM_CHUNK = 1000;
+
+    private final ChangeRepo changeRepo;
+    private final UserRepo userRepo;
+    private final PhoneRepo phoneRepo;
+    private final ShardRouter shardRouter;
+    private final long settleMillis;
+
+    public ChangeService(ChangeRepo changeRepo, UserRepo userRepo, PhoneRepo phoneRepo, ShardRouter shardRouter,
+                         @Value("${phonebook.changes.settle-millis:1000}") long settleMillis) {
+        this.changeRepo = changeRepo;
+        this.userRepo = userRepo;
+        this.phoneRepo = phoneRepo;
+        this.shardRouter = shardRouter;
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * @throws ShardUnsupportedException if the phone book is sharded
+     */
+    public void checkAvailable() {
+        if (shardRouter.isSharded()) {
+            throw new ShardUnsupportedException("The change feed is not available on a sharded phone book");
+        }
+    }
+
+    public List<ChangeEntry> findPage(long since, int limit) {
+        checkAvailable();
+        List<Change> changes = changeRepo.findByIdGreaterThanAndChangedAtBeforeOrderById(
+                since, Instant.now().minusMillis(settleMillis), PageRequest.of(0, limit));
+        Map<Long, UserSummary> users = load(changes, Change.Type.USER,
+                ids -> userRepo.findSummariesByIdIn(ids), UserSummary::getId);
+        Map<Long, PhoneRow> phones = load(changes, Change.Type.PHONE,
+                ids -> phoneRepo.findRowsByIdIn(ids), PhoneRow::getId);
+        return changes.stream()
+                .map(change -> new ChangeEntry(change.getId(), change.getEntityType(), change.getEntityId(),
+                        change.getOperation(), change.getChangedAt(),
+                        change.getOperation() == Change.Operation.DELETE ? null
+                                : change.getEntityType() == Change.Type.USER
+                                ? users.get(change.getEntityId())
+                                : phones.get(change.getEntityId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the token after which the feed has nothing settled yet
+     */
+    public long head() {
+        checkAvailable();
+        return changeRepo.findLastIdBefore(Instant.now().minusMillis(settleMillis));
+    }
+
+    public void forEach(long since, Consumer<ChangeEntry> consumer) {
+        List<ChangeEntry> chunk;
+        do {
+            chunk = findPage(since, STREAM_CHUNK);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                since = chunk.get(chunk.size() - 1).getSeq();
+            }
+        } while (chunk.size() == STREAM_CHUNK);
+    }
+
+    private static <T> Map<Long, T> load(List<Change> changes, Change.Type type,
+                                         Function<Collection<Long>, List<T>> loader, Function<T, Long> id) {
+        Set<Long> ids = changes.stream()
+                .filter(change -> change.getEntityType() == type && change.getOperation() == Change.Operation.UPSERT)
+                .map(Change::getEntityId)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return loader.apply(ids).stream().collect(Collectors.toMap(id, Function.identity()));
+    }
+}
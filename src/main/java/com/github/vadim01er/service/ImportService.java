@@ -0,0 +1,231 @@
+package com.github.vadim01er.service;
+
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.entity.BulkPhoneDTO;
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.entity.UserDTO;
+import com.github.vadim01er.json.ImportReport;
+import com.github.vadim01er.push.ChangeBroadcaster;
+import com.github.vadim01er.repository.ChangeLog;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.search.NameSearch;
+import com.github.vadim01er.search.NumberSuggester;
+import com.github.vadim01er.sharding.ShardContext;
+import com.github.vadim01er.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Imports rows in chunks of {@code CHUNK_SIZE}, each in a transaction of its own. The change log entries of a chunk
+ * are recorded in a second, short transaction right after the chunk commits, rather than before its rows are
+ * flushed, so that they are never older than the settle window by the time they commit. A failure between the two
+ * transactions leaves the chunk imported but out of the change feed, which is logged.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final UserRepo userRepo;
+    private final PhoneRepo phoneRepo;
+    private final NameSearch nameSearch;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final LookupCache<Long, List<Phone>> numberCache;
+    private final LookupCache<Long, User> userCache;
+    private final PhoneNumberNormalizer normalizer;
+    private final NumberSuggester numberSuggester;
+    private final ChangeLog changeLog;
+    private final ChangeBroadcaster changeBroadcaster;
+    private final ShardRouter shardRouter;
+
+    /**
+     * New users are spread over the shards round-robin, like single inserts.
+     */
+    public ImportReport importUsers(Iterator<UserDTO> rows) {
+        return run(rows, this::writeUsers, user -> shardRouter.place());
+    }
+
+    /**
+     * Phones are written on the shard of their user.
+     */
+    public ImportReport importPhones(Iterator<BulkPhoneDTO> rows) {
+        return run(rows, this::writePhones, phone -> shardRouter.shardOfUser(phone.getUserId()));
+    }
+
+    private <T> ImportReport run(Iterator<T> rows, ChunkWriter<T> writer, ToIntFunction<T> shardOf) {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<Integer> chunkRows = new ArrayList<>(CHUNK_SIZE);
+        int row = 0;
+        try {
+            while (rows.hasNext()) {
+                T value = rows.next();
+                row++;
+                report.received();
+                String violations = validate(value);
+                if (violations != null) {
+                    report.fail(row, violations);
+                    continue;
+                }
+                chunk.add(value);
+                chunkRows.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, chunkRows, writer, shardOf, report);
+                }
+            }
+        } catch (RuntimeException e) {
+            report.fail(row + 1, "Unreadable row, import stopped: " + e.getMessage());
+        }
+        flush(chunk, chunkRows, writer, shardOf, report);
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private <T> String validate(T value) {
+        if (value == null) {
+            return "Empty row";
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return "Invalid field: " + violations.stream()
+                .map(violation -> violation.getPropertyPath().toString())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private <T> void flush(List<T> chunk, List<Integer> chunkRows, ChunkWriter<T> writer, ToIntFunction<T> shardOf,
+                           ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        if (!shardRouter.isSharded()) {
+            write(chunk, chunkRows, writer, report);
+        } else {
+            Map<Integer, List<Integer>> byShard = new TreeMap<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                byShard.computeIfAbsent(shardOf.applyAsInt(chunk.get(i)), shard -> new ArrayList<>()).add(i);
+            }
+            byShard.forEach((shard, indexes) -> ShardContext.run(shard, () -> write(
+                    indexes.stream().map(chunk::get).collect(Collectors.toList()),
+                    indexes.stream().map(chunkRows::get).collect(Collectors.toList()),
+                    writer, report)));
+        }
+        chunk.clear();
+        chunkRows.clear();
+    }
+
+    private <T> void write(List<T> chunk, List<Integer> chunkRows, ChunkWriter<T> writer, ImportReport report) {
+        List<Runnable> changes = new ArrayList<>();
+        try {
+            Map<Integer, String> rejected = transactionTemplate.execute(status -> {
+                Map<Integer, String> result = writer.write(chunk, changes);
+                entityManager.flush();
+                entityManager.clear();
+                return result;
+            });
+            rejected.forEach((index, message) -> report.fail(chunkRows.get(index), message));
+            report.imported(chunk.size() - rejected.size());
+        } catch (RuntimeException e) {
+            chunkRows.forEach(row -> report.fail(row, "Chunk rolled back: " + e.getMessage()));
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> changes.forEach(Runnable::run));
+        } catch (RuntimeException e) {
+            log.error("Imported rows {} to {} are missing from the change feed", chunkRows.get(0),
+                    chunkRows.get(chunkRows.size() - 1), e);
+        }
+    }
+
+    private Map<Integer, String> writeUsers(List<UserDTO> chunk, List<Runnable> changes) {
+        List<User> users = chunk.stream()
+                .map(dto -> new User(dto.getName()))
+                .collect(Collectors.toList());
+        userRepo.saveAll(users);
+        List<Long> ids = users.stream().map(User::getId).collect(Collectors.toList());
+        changes.add(() -> changeLog.record(Change.Type.USER, Change.Operation.UPSERT, ids));
+        AfterCommit.run(() -> {
+            users.forEach(user -> nameSearch.index(user.getId(), user.getName()));
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, ids);
+        });
+        return Collections.emptyMap();
+    }
+
+    private Map<Integer, String> writePhones(List<BulkPhoneDTO> chunk, List<Runnable> changes) {
+        Set<Long> userIds = chunk.stream()
+                .map(BulkPhoneDTO::getUserId)
+                .collect(Collectors.toSet());
+        Set<Long> existing = new HashSet<>(userRepo.findExistingIds(userIds));
+        Map<Integer, String> rejected = new HashMap<>();
+        List<Phone> phones = new ArrayList<>(chunk.size());
+        Set<Long> owners = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            BulkPhoneDTO dto = chunk.get(i);
+            if (!existing.contains(dto.getUserId())) {
+                rejected.put(i, "No such User: " + dto.getUserId());
+                continue;
+            }
+            if (shardRouter.isMoving(dto.getUserId())) {
+                rejected.put(i, "User " + dto.getUserId() + " is being moved to another shard, retry later");
+                continue;
+            }
+            Phone phone = new Phone();
+            phone.setName(dto.getName());
+            phone.setNumber(dto.getNumber());
+            phone.setNormalizedNumber(normalizer.normalize(dto.getNumber()));
+            phone.setUser(entityManager.getReference(User.class, dto.getUserId()));
+            phones.add(phone);
+            owners.add(dto.getUserId());
+        }
+        phoneRepo.saveAll(phones);
+        if (!owners.isEmpty()) {
+            userRepo.bumpVersions(owners, Instant.now());
+        }
+        List<Long> ids = phones.stream().map(Phone::getId).collect(Collectors.toList());
+        changes.add(() -> {
+            Timestamp now = ChangeLog.now();
+            changeLog.record(Change.Type.PHONE, Change.Operation.UPSERT, ids, now);
+            changeLog.record(Change.Type.USER, Change.Operation.UPSERT, owners, now);
+        });
+        AfterCommit.run(() -> {
+            phones.forEach(phone -> {
+                numberCache.evict(phone.getNormalizedNumber());
+                numberSuggester.add(phone.getId(), phone.getNormalizedNumber());
+            });
+            owners.forEach(userCache::evict);
+            changeBroadcaster.publish(Change.Type.PHONE, Change.Operation.UPSERT, ids);
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, owners);
+        });
+        return rejected;
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter<T> {
+        /**
+         * @param changes collects the change log records of the chunk, run once it has committed
+         * @return the messages of rejected rows by their index in the chunk
+         */
+        Map<Integer, String> write(List<T> chunk, List<Runnable> changes);
+    }
+}
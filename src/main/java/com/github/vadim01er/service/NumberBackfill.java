@@ -0,0 +1,79 @@
+package com.github.vadim01er.service;
+
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.search.NumberSuggester;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills {@code phone.normalized_number} for rows written before the column existed.
+ * Runs once in the background after startup, in keyset-ordered chunks. Each chunk is written by one batched
+ * {@code UPDATE ... WHERE normalized_number IS NULL} that touches nothing but that column, so a phone edited
+ * meanwhile keeps its edit and the normalized number that came with it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "phonebook.phone.backfill", havingValue = "true", matchIfMissing = true)
+public class NumberBackfill {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final String UPDATE = "UPDATE phone SET normalized_number = ? "
+            + "WHERE phone_id = ? AND normalized_number IS NULL";
+
+    private final PhoneRepo phoneRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final PhoneNumberNormalizer normalizer;
+    private final LookupCache<Long, List<Phone>> numberCache;
+    private final NumberSuggester numberSuggester;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "number-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long run() {
+        long after = 0;
+        long updated = 0;
+        List<Object[]> chunk;
+        do {
+            chunk = phoneRepo.findUnnormalizedAfter(after, PageRequest.of(0, CHUNK_SIZE));
+            List<Object[]> rows = new ArrayList<>(chunk.size());
+            for (Object[] phone : chunk) {
+                Long normalized = normalizer.normalize((String) phone[1]);
+                if (normalized != null) {
+                    rows.add(new Object[]{normalized, phone[0]});
+                }
+            }
+            int[] counts = rows.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(UPDATE, rows);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    Long normalized = (Long) rows.get(i)[0];
+                    numberCache.evict(normalized);
+                    numberSuggester.add((Long) rows.get(i)[1], normalized);
+                    updated++;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                after = (Long) chunk.get(chunk.size() - 1)[0];
+            }
+        } while (chunk.size() == CHUNK_SIZE);
+        if (updated > 0) {
+            log.info("Backfilled normalized numbers for {} phones", updated);
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.vadim01er.service;
+
+import com.github.vadim01er.validation.PhoneNumberFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reduces any accepted spelling of a phone number to a canonical E.164-like digit string stored as a {@code long}:
+ * {@code +7(999)123-45-67}, {@code 79991234567}, {@code 89991234567} and {@code 999123-4567} all become 79991234567.
+ * Input is scanned once by {@link PhoneNumberFormat}; the prefix rewrite is plain arithmetic.
+ */
+@Component
+public class PhoneNumberNormalizer {
+
+    private static final int NATIONAL_LENGTH = 10;
+    private static final long NATIONAL_SCALE = 10_000_000_000L;
+    private static final int MAX_DIGITS = 18;
+
+    private final long countryCode;
+    private final int countryCodeLength;
+    private final long trunkPrefix;
+    private final int trunkPrefixLength;
+
+    public PhoneNumberNormalizer(@Value("${phonebook.phone.country-code:7}") String countryCode,
+                                 @Value("${phonebook.phone.trunk-prefix:8}") String trunkPrefix) {
+        this.countryCode = countryCode.isEmpty() ? 0 : Long.parseLong(countryCode);
+        this.countryCodeLength = countryCode.length();
+        this.trunkPrefix = trunkPrefix.isEmpty() ? 0 : Long.parseLong(trunkPrefix);
+        this.trunkPrefixLength = trunkPrefix.length();
+    }
+
+    public Long normalize(String number) {
+        if (number == null) {
+            return null;
+        }
+        long parsed = PhoneNumberFormat.parse(number);
+        if (parsed == PhoneNumberFormat.INVALID) {
+            parsed = PhoneNumberFormat.digitsOf(number);
+            if (parsed == PhoneNumberFormat.INVALID) {
+                return null;
+            }
+        }
+        int length = PhoneNumberFormat.length(parsed);
+        long digits = PhoneNumberFormat.digits(parsed);
+        if (trunkPrefixLength > 0 && length == NATIONAL_LENGTH + trunkPrefixLength
+                && digits / NATIONAL_SCALE == trunkPrefix) {
+            digits = countryCode * NATIONAL_SCALE + digits % NATIONAL_SCALE;
+            length = NATIONAL_LENGTH + countryCodeLength;
+        } else if (length == NATIONAL_LENGTH) {
+            digits = countryCode * NATIONAL_SCALE + digits;
+            length = NATIONAL_LENGTH + countryCodeLength;
+        }
+        if (length == 0 || length > MAX_DIGITS) {
+            return null;
+        }
+        return digits;
+    }
+}
@@ -1,56 +1,179 @@
 package com.github.vadim01er.service;
 
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.entity.Change;
 import com.github.vadim01er.entity.Phone;
 import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.PhonePatchDTO;
+import com.github.vadim01er.entity.PhoneRow;
 import com.github.vadim01er.entity.User;
+import com.github.vadim01er.push.ChangeBroadcaster;
 import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.search.NumberSuggester;
+import com.github.vadim01er.sharding.ShardKey;
+import com.github.vadim01er.sharding.ShardRouter;
+import com.github.vadim01er.storage.PhoneBookStore;
 import lombok.Data;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Data
 @Service
 public class PhoneService {
 
     private final PhoneRepo phoneRepo;
+    private final EntityManager entityManager;
+    private final LookupCache<Long, Phone> phoneCache;
+    private final LookupCache<Long, List<Phone>> numberCache;
+    private final LookupCache<Long, User> userCache;
+    private final PhoneNumberNormalizer normalizer;
+    private final NumberSuggester numberSuggester;
+    private final ChangeBroadcaster changeBroadcaster;
+    private final PhoneBookStore phoneBookStore;
+    private final ShardRouter shardRouter;
 
+    @Transactional(readOnly = true)
     public List<Phone> findAll() {
-        return phoneRepo.findAll();
+        return shardRouter.fanOut(phoneRepo::findAll, PhoneService::ownerOf);
     }
 
-    public Phone findById(Long id) {
-        return phoneRepo.findById(id).orElse(null);
+    @Transactional(readOnly = true)
+    public List<Phone> findPage(long after, int limit) {
+        return shardRouter.merge(() -> phoneRepo.findByIdGreaterThanOrderById(after, PageRequest.of(0, limit)),
+                PhoneService::ownerOf, Comparator.comparing(Phone::getId), limit);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Phone> consumer) {
+        shardRouter.forEachShard(() -> {
+            try (Stream<Phone> phones = phoneRepo.streamAll()) {
+                phones.forEach(phone -> {
+                    if (shardRouter.owns(ownerOf(phone))) {
+                        consumer.accept(phone);
+                    }
+                    entityManager.detach(phone);
+                });
+            }
+        });
+    }
+
+    public Phone findById(@ShardKey(ShardKey.Kind.PHONE) Long id) {
+        return phoneBookStore.findPhone(id);
+    }
+
+    public Long findVersion(@ShardKey(ShardKey.Kind.PHONE) Long id) {
+        Long cached = phoneCache.probe(id, Phone::getVersion);
+        return cached != null ? cached : phoneRepo.findVersionById(id).orElse(null);
     }
 
     public List<Phone> findByNumber(String number) {
-        return phoneRepo.findByNumber(number);
+        Long normalized = normalizer.normalize(number);
+        if (normalized == null) {
+            return Collections.emptyList();
+        }
+        return phoneBookStore.findPhonesByNumber(normalized);
     }
 
-    public Phone addPhone(User user, PhoneDTO phoneDTO) {
+    /**
+     * @return for every number, in order, the phones having it (empty if none or unparseable)
+     */
+    public List<List<Phone>> findByNumbers(List<String> numbers) {
+        return phoneBookStore.findPhonesByNumbers(numbers.stream()
+                .map(normalizer::normalize)
+                .collect(Collectors.toList()));
+    }
+
+    @Transactional
+    public Phone addPhone(@ShardKey(write = true) User user, PhoneDTO phoneDTO) {
         Phone entity = new Phone();
         entity.setName(phoneDTO.getName());
         entity.setNumber(phoneDTO.getNumber());
+        entity.setNormalizedNumber(normalizer.normalize(phoneDTO.getNumber()));
         entity.setUser(user);
-        return phoneRepo.save(entity);
+        Phone saved = phoneRepo.insert(entity);
+        AfterCommit.run(() -> {
+            numberCache.evict(saved.getNormalizedNumber());
+            userCache.evict(user.getId());
+            numberSuggester.add(saved.getId(), saved.getNormalizedNumber());
+            changeBroadcaster.publish(Change.Type.PHONE, Change.Operation.UPSERT, Collections.singleton(saved.getId()));
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(user.getId()));
+        });
+        return saved;
     }
 
-    public Phone replacePhone(Long id, PhoneDTO phoneDTO) {
-        Optional<Phone> phone = phoneRepo.findById(id)
-                .map(phone1 -> {
-                    phone1.setName(phoneDTO.getName());
-                    phone1.setNumber(phoneDTO.getNumber());
-                    return phoneRepo.save(phone1);
-                });
-        return phone.orElse(null);
+    public Phone replacePhone(@ShardKey(value = ShardKey.Kind.PHONE, write = true) Long id, PhoneDTO phoneDTO,
+                              Long expectedVersion) {
+        return update(id, phoneDTO.getName(), phoneDTO.getNumber(), expectedVersion);
+    }
+
+    public Phone patchPhone(@ShardKey(value = ShardKey.Kind.PHONE, write = true) Long id, PhonePatchDTO phonePatchDTO,
+                            Long expectedVersion) {
+        return update(id, phonePatchDTO.getName(), phonePatchDTO.getNumber(), expectedVersion);
+    }
+
+    public boolean deleteById(@ShardKey(value = ShardKey.Kind.PHONE, write = true) Long id) {
+        Optional<PhoneRow> deleted = phoneRepo.deleteReturning(id);
+        deleted.ifPresent(row -> {
+            evictDeleted(row);
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT,
+                    Collections.singleton(row.getUserId()));
+        });
+        return deleted.isPresent();
+    }
+
+    public int deleteAll(Collection<Long> ids) {
+        List<PhoneRow> deleted = shardRouter.onPhoneShards(ids, phoneRepo::deleteAllReturning);
+        deleted.forEach(this::evictDeleted);
+        changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, deleted.stream()
+                .map(PhoneRow::getUserId)
+                .collect(Collectors.toSet()));
+        return deleted.size();
+    }
+
+    public void evictDeleted(PhoneRow row) {
+        phoneCache.evict(row.getId());
+        numberCache.evict(row.getNormalizedNumber());
+        userCache.evict(row.getUserId());
+        numberSuggester.remove(row.getId(), row.getNormalizedNumber());
+        changeBroadcaster.publish(Change.Type.PHONE, Change.Operation.DELETE, Collections.singleton(row.getId()));
+    }
+
+    private static long ownerOf(Phone phone) {
+        return phone.getUser().getId();
     }
 
-    public boolean deleteById(Long id) {
-        if (!phoneRepo.existsById(id)) {
-            return false;
+    private Phone update(Long id, String name, String number, Long expectedVersion) {
+        Long normalized = number != null ? normalizer.normalize(number) : null;
+        Optional<PhoneRow> updated = phoneRepo.updateReturning(id, name, number, normalized, expectedVersion);
+        if (updated.isEmpty() && expectedVersion != null && phoneRepo.existsById(id)) {
+            throw new OptimisticLockingFailureException("Phone " + id + " was modified");
         }
-        phoneRepo.deleteById(id);
-        return true;
+        return updated
+                .map(row -> {
+                    phoneCache.evict(row.getId());
+                    numberCache.evict(row.getPreviousNormalizedNumber());
+                    numberCache.evict(row.getNormalizedNumber());
+                    userCache.evict(row.getUserId());
+                    numberSuggester.remove(row.getId(), row.getPreviousNormalizedNumber());
+                    numberSuggester.add(row.getId(), row.getNormalizedNumber());
+                    changeBroadcaster.publish(Change.Type.PHONE, Change.Operation.UPSERT,
+                            Collections.singleton(row.getId()));
+                    changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT,
+                            Collections.singleton(row.getUserId()));
+                    return row.toPhone();
+                })
+                .orElse(null);
     }
 }
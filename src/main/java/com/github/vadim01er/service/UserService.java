@@ -1,51 +1,166 @@
 package com.github.vadim01er.service;
 
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.entity.Change;
+import com.github.vadim01er.entity.PhoneRow;
 import com.github.vadim01er.entity.User;
 import com.github.vadim01er.entity.UserDTO;
+import com.github.vadim01er.entity.UserSummary;
+import com.github.vadim01er.push.ChangeBroadcaster;
+import com.github.vadim01er.repository.ChangeLog;
 import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.search.NameSearch;
+import com.github.vadim01er.sharding.ShardKey;
+import com.github.vadim01er.sharding.ShardPlacement;
+import com.github.vadim01er.sharding.ShardRouter;
+import com.github.vadim01er.storage.PhoneBookStore;
 import lombok.AllArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 public class UserService {
 
+    private static final int STREAM_CHUNK = 100;
+
     private final UserRepo userRepo;
+    private final NameSearch nameSearch;
+    private final EntityManager entityManager;
+    private final LookupCache<Long, User> userCache;
+    private final PhoneService phoneService;
+    private final ChangeLog changeLog;
+    private final ChangeBroadcaster changeBroadcaster;
+    private final PhoneBookStore phoneBookStore;
+    private final ShardRouter shardRouter;
 
+    @Transactional
+    @ShardPlacement
     public User addUser(String name) {
-        User user = new User(name);
-        return userRepo.save(user);
+        User user = userRepo.save(new User(name));
+        changeLog.record(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(user.getId()));
+        AfterCommit.run(() -> {
+            nameSearch.index(user.getId(), user.getName());
+            changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(user.getId()));
+        });
+        return user;
     }
 
-    public User findById(Long id) {
-        Optional<User> byId = userRepo.findById(id);
-        if (byId.isEmpty()) {
-            return null;
-        }
-        return byId.get();
+    public User findById(@ShardKey Long id) {
+        return phoneBookStore.findUser(id);
+    }
+
+    /**
+     * Reads the user from the primary, bypassing the caches and the embedded storage, which may lag behind;
+     * for writes that must see every committed user.
+     */
+    @Transactional
+    public User findForWrite(@ShardKey(write = true) Long id) {
+        return userRepo.findById(id).orElse(null);
+    }
+
+    /**
+     * @return users in the order of {@code ids}, {@code null} where there is none
+     */
+    public List<User> findAllById(List<Long> ids) {
+        return phoneBookStore.findUsers(ids);
+    }
+
+    public Long findVersion(@ShardKey Long id) {
+        Long cached = userCache.probe(id, User::getVersion);
+        return cached != null ? cached : userRepo.findVersionById(id).orElse(null);
     }
 
+    @Transactional(readOnly = true)
     public List<User> findAll() {
-        return userRepo.findAll();
+        return shardRouter.fanOut(() -> withPhones(userRepo.findAll()), User::getId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<User> findPage(long after, int limit) {
+        return shardRouter.merge(
+                () -> withPhones(userRepo.findByIdGreaterThanOrderById(after, PageRequest.of(0, limit))),
+                User::getId, Comparator.comparingLong(User::getId), limit);
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserSummary> findSummaryPage(long after, int limit) {
+        return shardRouter.merge(() -> userRepo.findSummaryPage(after, PageRequest.of(0, limit)),
+                UserSummary::getId, Comparator.comparingLong(UserSummary::getId), limit);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<UserSummary> consumer) {
+        shardRouter.forEachShard(() -> {
+            try (Stream<UserSummary> users = userRepo.streamSummaries()) {
+                users.filter(user -> shardRouter.owns(user.getId())).forEach(consumer);
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachWithPhones(Consumer<User> consumer) {
+        long after = 0;
+        List<User> chunk;
+        do {
+            chunk = findPage(after, STREAM_CHUNK);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+            }
+            entityManager.clear();
+        } while (chunk.size() == STREAM_CHUNK);
+    }
+
+    @Transactional(readOnly = true)
+    public List<User> findByName(String name, boolean prefix, long after, int limit) {
+        return nameSearch.search(name, prefix, after, limit);
     }
 
-    public boolean deleteById(Long id) {
-        if (!userRepo.existsById(id)){
+    public boolean deleteById(@ShardKey(write = true) Long id) {
+        Optional<List<PhoneRow>> deleted = userRepo.deleteCascadeReturning(id);
+        if (deleted.isEmpty()) {
             return false;
         }
-        userRepo.deleteById(id);
+        deleted.get().forEach(phoneService::evictDeleted);
+        userCache.evict(id);
+        nameSearch.remove(id);
+        changeBroadcaster.publish(Change.Type.USER, Change.Operation.DELETE, Collections.singleton(id));
         return true;
     }
 
-    public User replaceUser(Long id, UserDTO userRequest) {
-        Optional<User> user = userRepo.findById(id)
-                .map(user1 -> {
-                    user1.setName(userRequest.getName());
-                    return userRepo.save(user1);
-                });
-        return user.orElse(null);
+    public UserSummary replaceUser(@ShardKey(write = true) Long id, UserDTO userRequest, Long expectedVersion) {
+        Optional<Long> version = userRepo.updateNameReturningVersion(id, userRequest.getName(), expectedVersion);
+        if (version.isEmpty()) {
+            if (expectedVersion != null && userRepo.existsById(id)) {
+                throw new OptimisticLockingFailureException("User " + id + " was modified");
+            }
+            return null;
+        }
+        userCache.evict(id);
+        nameSearch.index(id, userRequest.getName());
+        changeBroadcaster.publish(Change.Type.USER, Change.Operation.UPSERT, Collections.singleton(id));
+        return new UserSummary(id, userRequest.getName(), version.get());
+    }
+
+    /**
+     * Loads the phones while the persistence context is open; fanned-out pages come from one context per shard.
+     */
+    private List<User> withPhones(List<User> users) {
+        if (shardRouter.isSharded()) {
+            users.forEach(user -> Hibernate.initialize(user.getPhone()));
+        }
+        return users;
     }
 }
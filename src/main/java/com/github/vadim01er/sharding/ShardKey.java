@@ -0,0 +1,26 @@
+package com.github.vadim01er.sharding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the parameter of a service method that decides its shard: a user id, a {@code User}, or a phone id.
+ * The method then runs with that shard bound, see {@link ShardRoutingInterceptor}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+
+    Kind value() default Kind.USER;
+
+    /**
+     * Writes are refused while the user's chunk is being moved to another shard.
+     */
+    boolean write() default false;
+
+    enum Kind {
+        USER, PHONE
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.vadim01er.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where a user lives. Every shard issues ids from its own range starting at {@link #base}, so a user's home shard
+ * is read off its id. Ids are grouped into chunks of {@code 1 << CHUNK_BITS}; {@link ShardRebalancer} moves whole
+ * chunks to other shards and records them in the {@code shard_chunks} catalog on shard 0, which every node
+ * reloads every {@code refreshMillis}.
+ */
+@Slf4j
+public class ShardMap implements Closeable {
+
+    public static final int SHARD_BITS = 40;
+    public static final int CHUNK_BITS = 20;
+
+    private static final String CREATE = "CREATE TABLE IF NOT EXISTS shard_chunks "
+            + "(chunk BIGINT PRIMARY KEY, shard INT NOT NULL, moving BOOLEAN NOT NULL)";
+
+    private final int shards;
+    private final JdbcTemplate catalog;
+    private final ScheduledExecutorService refresher;
+    private volatile State state = new State(Collections.emptyMap(), Collections.emptySet());
+
+    public ShardMap(int shards, DataSource catalog, long refreshMillis) {
+        this.shards = shards;
+        this.catalog = new JdbcTemplate(catalog);
+        this.catalog.execute(CREATE);
+        refresh();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-map-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static long base(int shard) {
+        return (long) shard << SHARD_BITS;
+    }
+
+    public static long chunkOf(long id) {
+        return id >>> CHUNK_BITS;
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    /**
+     * @return the shard an id was issued by; ids from no configured range map to shard 0, where they are not found
+     */
+    public int home(long id) {
+        long shard = id >>> SHARD_BITS;
+        return id > 0 && shard < shards ? (int) shard : 0;
+    }
+
+    public int shardOf(long userId) {
+        Integer moved = state.moved.get(chunkOf(userId));
+        return moved != null ? moved : home(userId);
+    }
+
+    public boolean isMoving(long userId) {
+        return state.moving.contains(chunkOf(userId));
+    }
+
+    public boolean isMovingAny() {
+        return !state.moving.isEmpty();
+    }
+
+    /**
+     * @return whether any chunk has ever moved; from then on a phone id no longer implies the shard of its owner,
+     * since the owner may have moved after the phone was created (or before, to a shard it moved away from again)
+     */
+    public boolean isDisplaced() {
+        return !state.moved.isEmpty();
+    }
+
+    public Map<Long, Integer> movedChunks() {
+        return state.moved;
+    }
+
+    /**
+     * Records where {@code chunk} lives and reloads the catalog. Rows are kept even when a chunk returns home.
+     */
+    public synchronized void assign(long chunk, int shard, boolean moving) {
+        if (catalog.update("UPDATE shard_chunks SET shard = ?, moving = ? WHERE chunk = ?",
+                shard, moving, chunk) == 0) {
+            catalog.update("INSERT INTO shard_chunks (chunk, shard, moving) VALUES (?, ?, ?)", chunk, shard, moving);
+        }
+        refresh();
+    }
+
+    public void refresh() {
+        Map<Long, Integer> moved = new HashMap<>();
+        Set<Long> moving = new HashSet<>();
+        catalog.query("SELECT chunk, shard, moving FROM shard_chunks", resultSet -> {
+            long chunk = resultSet.getLong(1);
+            moved.put(chunk, resultSet.getInt(2));
+            if (resultSet.getBoolean(3)) {
+                moving.add(chunk);
+            }
+        });
+        state = new State(Collections.unmodifiableMap(moved), Collections.unmodifiableSet(moving));
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (DataAccessException e) {
+            log.warn("Could not reload the shard catalog, keeping the previous one", e);
+        }
+    }
+
+    private static final class State {
+        private final Map<Long, Integer> moved;
+        private final Set<Long> moving;
+
+        private State(Map<Long, Integer> moved, Set<Long> moving) {
+            this.moved = moved;
+            this.moving = moving;
+        }
+    }
+}
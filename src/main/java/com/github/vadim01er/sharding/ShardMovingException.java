@@ -0,0 +1,17 @@
+package com.github.vadim01er.sharding;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+
+/**
+ * A write hit a user whose chunk is being copied to another shard; it can be retried in a few seconds.
+ */
+public class ShardMovingException extends TransientDataAccessResourceException {
+
+    public ShardMovingException(long userId) {
+        this("User " + userId + " is being moved to another shard");
+    }
+
+    public ShardMovingException(String message) {
+        super(message);
+    }
+}
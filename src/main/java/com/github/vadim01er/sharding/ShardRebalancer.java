@@ -0,0 +1,257 @@
+package com.github.vadim01er.sharding;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Moves chunks of users, with their phones, between shards while the application keeps serving:
+ * <ol>
+ *     <li>the chunk is marked moving, which fences writes to its users (503) while reads stay on the source;</li>
+ *     <li>its rows are copied to the target in one transaction;</li>
+ *     <li>the chunk is assigned to the target, which takes over reads and writes;</li>
+ *     <li>the source rows are deleted.</li>
+ * </ol>
+ * Every step waits {@code move-settle-millis} for all nodes to reload the catalog and for requests routed by the
+ * previous catalog to finish. A move interrupted half-way is cleaned up by the next {@link #rebalance()}.
+ * Only chunks whose ids have all been issued can move; moves must be run from one node at a time.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "phonebook.shards.urls")
+public class ShardRebalancer {
+
+    private static final int COPY_BATCH = 1000;
+
+    private final ShardMap shardMap;
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+    private final List<TransactionTemplate> transactions = new ArrayList<>();
+    private final long settleMillis;
+
+    public ShardRebalancer(ShardMap shardMap, ShardRoutingDataSource shardRoutingDataSource,
+                           @Value("${phonebook.shards.move-settle-millis:3000}") long settleMillis) {
+        this.shardMap = shardMap;
+        this.settleMillis = settleMillis;
+        for (int shard = 0; shard < shardRoutingDataSource.size(); shard++) {
+            shards.add(new JdbcTemplate(shardRoutingDataSource.shard(shard)));
+            transactions.add(new TransactionTemplate(
+                    new DataSourceTransactionManager(shardRoutingDataSource.shard(shard))));
+        }
+    }
+
+    /**
+     * @return the number of users moved
+     * @throws IllegalArgumentException if the target is not a shard or the chunk is still receiving new ids
+     */
+    public synchronized int move(long chunk, int target) {
+        if (target < 0 || target >= shardMap.shards()) {
+            throw new IllegalArgumentException("No shard " + target);
+        }
+        int source = shardMap.shardOf(chunk << ShardMap.CHUNK_BITS);
+        if (source == target) {
+            return 0;
+        }
+        if (isOpen(chunk, nextUserIds())) {
+            throw new IllegalArgumentException("Chunk " + chunk + " is still receiving new users");
+        }
+        return transfer(chunk, source, target);
+    }
+
+    private int transfer(long chunk, int source, int target) {
+        long from = chunk << ShardMap.CHUNK_BITS;
+        long to = (chunk + 1) << ShardMap.CHUNK_BITS;
+        shardMap.assign(chunk, source, true);
+        settle();
+        int users = transactions.get(target).execute(status -> {
+            delete(shards.get(target), from, to);
+            int copied = copy(shards.get(source), shards.get(target), "users", "user_id", from, to);
+            copy(shards.get(source), shards.get(target), "phone", "phone_id", from, to);
+            return copied;
+        });
+        shardMap.assign(chunk, target, false);
+        settle();
+        transactions.get(source).executeWithoutResult(status -> delete(shards.get(source), from, to));
+        log.info("Moved chunk {} ({} users) from shard {} to shard {}", chunk, users, source, target);
+        return users;
+    }
+
+    /**
+     * Cleans up after interrupted moves, then moves chunks from the shard with the most users to the one with
+     * the fewest for as long as that narrows the gap.
+     */
+    public synchronized List<Move> rebalance() {
+        sweep();
+        long[] next = nextUserIds();
+        List<Map<Long, Long>> chunks = new ArrayList<>();
+        long[] sizes = new long[shards.size()];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Map<Long, Long> owned = ownedChunks(shard);
+            chunks.add(owned);
+            sizes[shard] = owned.values().stream().mapToLong(Long::longValue).sum();
+        }
+        List<Move> moves = new ArrayList<>();
+        while (true) {
+            int largest = 0;
+            int smallest = 0;
+            for (int shard = 1; shard < sizes.length; shard++) {
+                largest = sizes[shard] > sizes[largest] ? shard : largest;
+                smallest = sizes[shard] < sizes[smallest] ? shard : smallest;
+            }
+            long gap = sizes[largest] - sizes[smallest];
+            Long best = null;
+            for (Map.Entry<Long, Long> entry : chunks.get(largest).entrySet()) {
+                long size = entry.getValue();
+                if (size * 2 <= gap && (best == null || size > chunks.get(largest).get(best))
+                        && !isOpen(entry.getKey(), next)) {
+                    best = entry.getKey();
+                }
+            }
+            if (best == null) {
+                return moves;
+            }
+            long size = chunks.get(largest).remove(best);
+            int users = transfer(best, largest, smallest);
+            chunks.get(smallest).put(best, size);
+            sizes[largest] -= size;
+            sizes[smallest] += size;
+            moves.add(new Move(best, largest, smallest, users));
+        }
+    }
+
+    public List<ShardStats> stats() {
+        List<ShardStats> stats = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            JdbcTemplate jdbcTemplate = shards.get(shard);
+            stats.add(new ShardStats(shard,
+                    jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class),
+                    jdbcTemplate.queryForObject("SELECT count(*) FROM phone", Long.class)));
+        }
+        return stats;
+    }
+
+    /**
+     * Finishes interrupted moves: a chunk still marked moving stays on its source, and copies of a chunk on any
+     * shard but its owner are deleted.
+     */
+    private void sweep() {
+        shardMap.refresh();
+        for (Map.Entry<Long, Integer> entry : shardMap.movedChunks().entrySet()) {
+            long chunk = entry.getKey();
+            int owner = entry.getValue();
+            if (shardMap.isMoving(chunk << ShardMap.CHUNK_BITS)) {
+                shardMap.assign(chunk, owner, false);
+            }
+            for (int shard = 0; shard < shards.size(); shard++) {
+                if (shard != owner) {
+                    JdbcTemplate jdbcTemplate = shards.get(shard);
+                    transactions.get(shard).executeWithoutResult(status -> delete(jdbcTemplate,
+                            chunk << ShardMap.CHUNK_BITS, (chunk + 1) << ShardMap.CHUNK_BITS));
+                }
+            }
+        }
+    }
+
+    private Map<Long, Long> ownedChunks(int shard) {
+        Map<Long, Long> owned = new HashMap<>();
+        shards.get(shard).query("SELECT user_id / " + (1L << ShardMap.CHUNK_BITS) + ", count(*) FROM users "
+                + "GROUP BY user_id / " + (1L << ShardMap.CHUNK_BITS), resultSet -> {
+            long chunk = resultSet.getLong(1);
+            if (shardMap.shardOf(chunk << ShardMap.CHUNK_BITS) == shard) {
+                owned.put(chunk, resultSet.getLong(2));
+            }
+        });
+        return owned;
+    }
+
+    /**
+     * @return per shard, an id above every user id it has issued or will issue from a block already handed out
+     */
+    private long[] nextUserIds() {
+        long[] next = new long[shards.size()];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Long value = shards.get(shard).queryForObject("SELECT nextval('users_seq')", Long.class);
+            next[shard] = value == null ? Long.MAX_VALUE : value;
+        }
+        return next;
+    }
+
+    /**
+     * @return whether the home shard of the chunk may still issue ids in it
+     */
+    private boolean isOpen(long chunk, long[] next) {
+        long from = chunk << ShardMap.CHUNK_BITS;
+        int home = shardMap.home(from);
+        if (home + 1 < shardMap.shards() && from >= ShardMap.base(home + 1)) {
+            return false;
+        }
+        return ((chunk + 1) << ShardMap.CHUNK_BITS) > next[home];
+    }
+
+    private static void delete(JdbcTemplate jdbcTemplate, long from, long to) {
+        jdbcTemplate.update("DELETE FROM phone WHERE user_id >= ? AND user_id < ?", from, to);
+        jdbcTemplate.update("DELETE FROM users WHERE user_id >= ? AND user_id < ?", from, to);
+    }
+
+    /**
+     * Copies the rows of users in {@code [from, to)} page by page in {@code key} order.
+     */
+    private static int copy(JdbcTemplate source, JdbcTemplate target, String table, String key,
+                            long from, long to) {
+        String select = "SELECT * FROM " + table + " WHERE user_id >= ? AND user_id < ? AND " + key + " > ? "
+                + "ORDER BY " + key + " LIMIT " + COPY_BATCH;
+        int copied = 0;
+        long after = Long.MIN_VALUE;
+        List<Map<String, Object>> rows;
+        do {
+            rows = source.queryForList(select, from, to, after);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<String> columns = new ArrayList<>(rows.get(0).keySet());
+            String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+            List<Object[]> batch = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                batch.add(columns.stream().map(row::get).toArray());
+            }
+            target.batchUpdate(insert, batch);
+            copied += rows.size();
+            after = ((Number) rows.get(rows.size() - 1).get(key)).longValue();
+        } while (rows.size() == COPY_BATCH);
+        return copied;
+    }
+
+    private void settle() {
+        try {
+            Thread.sleep(settleMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving a chunk", e);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Move {
+        private long chunk;
+        private int from;
+        private int to;
+        private int users;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ShardStats {
+        private int shard;
+        private long users;
+        private long phones;
+    }
+}
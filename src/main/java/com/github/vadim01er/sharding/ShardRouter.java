@@ -0,0 +1,237 @@
+package com.github.vadim01er.sharding;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Runs work on the shard that owns a key, or on every shard in parallel with the results merged.
+ * Without {@code phonebook.shards.urls} there is a single shard and all work runs inline on the calling thread,
+ * inside whatever transaction and persistence context it already has.
+ * Fanned-out work runs in a read-only transaction of its own per shard, so lazy associations the caller needs
+ * must be initialized inside the work.
+ */
+@Component
+public class ShardRouter {
+
+    private static final String PHONE_OWNER = "SELECT user_id FROM phone WHERE phone_id = ?";
+
+    private final ShardMap shardMap;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnly;
+    private final TransactionTemplate readOnlyNew;
+    private final ExecutorService pool;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ShardRouter(ObjectProvider<ShardMap> shardMap, JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${phonebook.shards.fan-out-threads:16}") int fanOutThreads) {
+        this.shardMap = shardMap.getIfAvailable();
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.readOnlyNew = new TransactionTemplate(transactionManager);
+        this.readOnlyNew.setReadOnly(true);
+        this.readOnlyNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        if (this.shardMap == null) {
+            this.pool = null;
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isSharded() {
+        return shardMap != null;
+    }
+
+    public int shards() {
+        return shardMap == null ? 1 : shardMap.shards();
+    }
+
+    public int shardOfUser(long userId) {
+        return shardMap == null ? 0 : shardMap.shardOf(userId);
+    }
+
+    /**
+     * A phone lives with its owner. Its id names the shard that issued it, which is where it still is unless
+     * users have been moved between shards; then the owner is looked up on every shard.
+     */
+    public int shardOfPhone(long phoneId) {
+        if (shardMap == null) {
+            return 0;
+        }
+        if (!shardMap.isDisplaced()) {
+            return shardMap.home(phoneId);
+        }
+        Long owner = ownerOfPhone(phoneId);
+        return owner != null ? shardMap.shardOf(owner) : shardMap.home(phoneId);
+    }
+
+    public Long ownerOfPhone(long phoneId) {
+        List<Long> owners = fanOut(() -> jdbcTemplate.queryForList(PHONE_OWNER, Long.class, phoneId),
+                Long::longValue);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    /**
+     * @return whether the user lives on the bound shard; rows of other users are copies left by a chunk move
+     */
+    public boolean owns(long userId) {
+        return shardMap == null || shardMap.shardOf(userId) == ShardContext.current();
+    }
+
+    public boolean isMoving(long userId) {
+        return shardMap != null && shardMap.isMoving(userId);
+    }
+
+    public boolean isMovingAny() {
+        return shardMap != null && shardMap.isMovingAny();
+    }
+
+    /**
+     * @return the shard new users are created on, round-robin
+     */
+    public int place() {
+        return shardMap == null ? 0 : Math.floorMod(next.getAndIncrement(), shardMap.shards());
+    }
+
+    /**
+     * @return the results of {@code work} on every shard, concatenated in shard order; while a chunk is being
+     * moved, rows of its users may come from both the old and the new shard
+     */
+    public <T> List<T> fanOut(Supplier<List<T>> work) {
+        return fanOut(work, null);
+    }
+
+    /**
+     * @return the results of {@code work} on every shard, concatenated in shard order, keeping only the rows
+     * whose user (per {@code userIdOf}) lives on the shard that returned them
+     */
+    public <T> List<T> fanOut(Supplier<List<T>> work, ToLongFunction<? super T> userIdOf) {
+        if (shardMap == null) {
+            return work.get();
+        }
+        List<Future<List<T>>> futures = new ArrayList<>(shardMap.shards());
+        for (int shard = 0; shard < shardMap.shards(); shard++) {
+            int current = shard;
+            futures.add(submit(shard, userIdOf == null ? work : () -> work.get().stream()
+                    .filter(row -> shardMap.shardOf(userIdOf.applyAsLong(row)) == current)
+                    .collect(Collectors.toList())));
+        }
+        return join(futures);
+    }
+
+    /**
+     * Scatter-gather for keyset pages: every shard returns its first {@code limit} rows in {@code order},
+     * and the first {@code limit} of their union is the page.
+     */
+    public <T> List<T> merge(Supplier<List<T>> work, ToLongFunction<? super T> userIdOf,
+                             Comparator<? super T> order, int limit) {
+        if (shardMap == null) {
+            return work.get();
+        }
+        List<T> all = fanOut(work, userIdOf);
+        all.sort(order);
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    /**
+     * Runs {@code work} once per shard with the user ids that live there, concatenating the results.
+     */
+    public <T> List<T> partition(Collection<Long> userIds, Function<List<Long>, List<T>> work) {
+        if (shardMap == null) {
+            return work.apply(new ArrayList<>(userIds));
+        }
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long id : userIds) {
+            byShard.computeIfAbsent(shardMap.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        List<Future<List<T>>> futures = new ArrayList<>(byShard.size());
+        byShard.forEach((shard, ids) -> futures.add(submit(shard, () -> work.apply(ids))));
+        return join(futures);
+    }
+
+    /**
+     * Runs {@code work} on the calling thread once per shard, in shard order, each in a read-only transaction
+     * of its own; for streaming, where the consumer must stay on the calling thread. Use {@link #owns} to skip
+     * copies of users that are being moved.
+     */
+    public void forEachShard(Runnable work) {
+        if (shardMap == null) {
+            work.run();
+            return;
+        }
+        for (int shard = 0; shard < shardMap.shards(); shard++) {
+            ShardContext.run(shard, () -> readOnlyNew.executeWithoutResult(status -> work.run()));
+        }
+    }
+
+    /**
+     * Runs {@code work} on the calling thread once per shard with the phone ids that live there; the work brings
+     * its own transaction. Refused while a chunk is moving, since the phones' owners are not looked up.
+     */
+    public <T> List<T> onPhoneShards(Collection<Long> phoneIds, Function<List<Long>, List<T>> work) {
+        if (shardMap == null) {
+            return work.apply(new ArrayList<>(phoneIds));
+        }
+        if (shardMap.isMovingAny()) {
+            throw new ShardMovingException("Users are being moved between shards");
+        }
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long id : phoneIds) {
+            byShard.computeIfAbsent(shardOfPhone(id), shard -> new ArrayList<>()).add(id);
+        }
+        List<T> all = new ArrayList<>();
+        byShard.forEach((shard, ids) -> all.addAll(ShardContext.call(shard, () -> work.apply(ids))));
+        return all;
+    }
+
+    private <T> Future<List<T>> submit(int shard, Supplier<List<T>> work) {
+        return pool.submit(() -> ShardContext.call(shard, () -> readOnly.execute(status -> work.get())));
+    }
+
+    private static <T> List<T> join(List<Future<List<T>>> futures) {
+        List<T> all = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                all.addAll(future.get());
+            }
+            return all;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.vadim01er.sharding;
+
+import com.github.vadim01er.entity.User;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds the shard of a {@link ShardKey} argument, or a newly placed shard for {@link ShardPlacement} methods,
+ * for the duration of the call. Runs ahead of the transaction interceptor; a call made while a shard is already
+ * bound stays on that shard.
+ */
+public class ShardRoutingInterceptor implements MethodInterceptor {
+
+    private final ObjectProvider<ShardRouter> shardRouter;
+    private final Map<Method, Route> routes = new ConcurrentHashMap<>();
+
+    public ShardRoutingInterceptor(ObjectProvider<ShardRouter> shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    static boolean isRouted(Method method) {
+        return Route.of(method) != Route.NONE;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (ShardContext.isBound()) {
+            return invocation.proceed();
+        }
+        Route route = routes.computeIfAbsent(invocation.getMethod(), Route::of);
+        if (route == Route.NONE) {
+            return invocation.proceed();
+        }
+        ShardRouter router = shardRouter.getObject();
+        int shard;
+        if (route.key == null) {
+            shard = router.place();
+        } else {
+            Long key = key(invocation.getArguments()[route.index]);
+            if (key == null) {
+                return invocation.proceed();
+            }
+            if (route.key.value() == ShardKey.Kind.USER) {
+                shard = router.shardOfUser(key);
+                if (route.key.write() && router.isMoving(key)) {
+                    throw new ShardMovingException(key);
+                }
+            } else {
+                shard = router.shardOfPhone(key);
+                if (route.key.write() && router.isMovingAny()) {
+                    Long owner = router.ownerOfPhone(key);
+                    if (owner != null && router.isMoving(owner)) {
+                        throw new ShardMovingException(owner);
+                    }
+                }
+            }
+        }
+        Integer previous = ShardContext.bind(shard);
+        try {
+            return invocation.proceed();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    private static Long key(Object argument) {
+        if (argument instanceof User) {
+            return ((User) argument).getId();
+        }
+        return argument instanceof Number ? ((Number) argument).longValue() : null;
+    }
+
+    private static final class Route {
+        private static final Route NONE = new Route(null, -1);
+
+        private final ShardKey key;
+        private final int index;
+
+        private Route(ShardKey key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        private static Route of(Method method) {
+            if (method.isAnnotationPresent(ShardPlacement.class)) {
+                return new Route(null, -1);
+            }
+            Annotation[][] annotations = method.getParameterAnnotations();
+            for (int i = 0; i < annotations.length; i++) {
+                for (Annotation annotation : annotations[i]) {
+                    if (annotation instanceof ShardKey) {
+                        return new Route((ShardKey) annotation, i);
+                    }
+                }
+            }
+            return NONE;
+        }
+    }
+}
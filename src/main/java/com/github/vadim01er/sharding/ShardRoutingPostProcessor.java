@@ -0,0 +1,27 @@
+package com.github.vadim01er.sharding;
+
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.NonNull;
+
+import java.lang.reflect.Method;
+
+/**
+ * Adds {@link ShardRoutingInterceptor} in front of the existing advice (transactions in particular) of every bean
+ * with {@link ShardKey} or {@link ShardPlacement} methods.
+ */
+public class ShardRoutingPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    public ShardRoutingPostProcessor(ObjectProvider<ShardRouter> shardRouter) {
+        this.advisor = new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(@NonNull Method method, @NonNull Class<?> targetClass) {
+                return ShardRoutingInterceptor.isRouted(AopUtils.getMostSpecificMethod(method, targetClass));
+            }
+        }, new ShardRoutingInterceptor(shardRouter));
+        setBeforeExistingAdvisors(true);
+    }
+}
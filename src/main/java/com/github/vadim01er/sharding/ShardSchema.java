@@ -0,0 +1,59 @@
+package com.github.vadim01er.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.EnumSet;
+
+/**
+ * Brings every shard but shard 0 (which {@code ddl-auto} already covers) to the mapped schema, and moves each
+ * shard's id sequences into its range. Registered as a Hibernate integrator to get hold of the mapping metadata.
+ */
+@Slf4j
+public class ShardSchema implements Integrator {
+
+    private static final String[] SEQUENCES = {"users_seq", "phone_seq"};
+    private static final int INCREMENT = 50;
+
+    private volatile Metadata metadata;
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = metadata;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = null;
+    }
+
+    public void prepare(int shards, JdbcTemplate jdbcTemplate, boolean updateSchema) {
+        for (int shard = 1; shard < shards; shard++) {
+            int current = shard;
+            ShardContext.run(shard, () -> {
+                if (updateSchema && metadata != null) {
+                    new SchemaUpdate().execute(EnumSet.of(TargetType.DATABASE), metadata);
+                }
+                for (String sequence : SEQUENCES) {
+                    align(jdbcTemplate, sequence, current, shards);
+                }
+            });
+        }
+    }
+
+    private static void align(JdbcTemplate jdbcTemplate, String sequence, int shard, int shards) {
+        Long next = jdbcTemplate.queryForObject("SELECT nextval('" + sequence + "')", Long.class);
+        if (next == null || next < ShardMap.base(shard)) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (ShardMap.base(shard) + INCREMENT));
+        } else if (shard + 1 < shards && next >= ShardMap.base(shard + 1)) {
+            log.warn("Shard {} has run out of ids for {}", shard, sequence);
+        }
+    }
+}
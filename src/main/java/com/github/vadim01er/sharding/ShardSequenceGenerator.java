@@ -0,0 +1,46 @@
+package com.github.vadim01er.sharding;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pooled sequence generator that keeps one pool per shard, so that an id always comes from the sequence of the
+ * shard its row is inserted into (and therefore from that shard's id range, see {@link ShardMap#base}).
+ * With a single shard it behaves exactly like the standard pooled sequence generator.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+
+    private final Map<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+    private String optimizerType;
+    private Class<?> returnClass;
+    private int incrementSize;
+    private long initialValue;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        DatabaseStructure structure = getDatabaseStructure();
+        optimizerType = getOptimizer().getClass().getName();
+        returnClass = type.getReturnedClass();
+        incrementSize = structure.getIncrementSize();
+        initialValue = structure.getInitialValue();
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Optimizer optimizer = optimizers.computeIfAbsent(ShardContext.current(), shard ->
+                OptimizerFactory.buildOptimizer(optimizerType, returnClass, incrementSize, initialValue));
+        return optimizer.generate(getDatabaseStructure().buildCallback(session));
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.vadim01er.sharding;
+
+/**
+ * A feature that needs one database, such as the globally ordered change feed, was used on a sharded phone book.
+ */
+public class ShardUnsupportedException extends RuntimeException {
+
+    public ShardUnsupportedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.vadim01er.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Records how long after JVM start the context was up ({@code phase=started}) and readiness flipped to accepting
+ * traffic ({@code phase=ready}); the gap between them is the warm-up. Published as {@code phonebook.startup.time}.
+ */
+@Slf4j
+@Component
+public class StartupTimer {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private volatile long startedMillis = -1;
+    private volatile long readyMillis = -1;
+
+    public StartupTimer(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void started() {
+        startedMillis = uptime();
+        register("started", StartupTimer::getStartedMillis);
+    }
+
+    @EventListener
+    public void availabilityChanged(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || readyMillis >= 0) {
+            return;
+        }
+        readyMillis = uptime();
+        register("ready", StartupTimer::getReadyMillis);
+        log.info("Context started {} ms and ready for traffic {} ms after JVM start", startedMillis, readyMillis);
+    }
+
+    public long getStartedMillis() {
+        return startedMillis;
+    }
+
+    public long getReadyMillis() {
+        return readyMillis;
+    }
+
+    private void register(String phase, ToDoubleFunction<StartupTimer> millis) {
+        meterRegistry.ifAvailable(registry -> TimeGauge.builder("phonebook.startup.time", this,
+                        TimeUnit.MILLISECONDS, millis)
+                .tag("phase", phase)
+                .description("Time from JVM start to the startup phase")
+                .register(registry));
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
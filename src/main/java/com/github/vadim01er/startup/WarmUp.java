@@ -0,0 +1,198 @@
+package com.github.vadim01er.startup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadim01er.filter.InternalRequests;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the read requests of {@code UserController} and {@code PhoneController} to this instance over HTTP, so that
+ * lazily initialized beans get created and the JIT compiles the hot paths, and loads the first
+ * {@code preload-users} users into the lookup caches. Application runners finish before Spring Boot switches
+ * readiness to accepting traffic, so the pod only takes traffic once this is done.
+ * Warm-up requests carry the {@link InternalRequests} token, so the rate limiter lets them through.
+ * With {@code exit-after-warm-up}, which only the {@code appCdsClassList} training run sets, the application context
+ * is closed once it reports ready, and the JVM ends with it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "phonebook.startup.warm-up", havingValue = "true")
+public class WarmUp implements ApplicationRunner {
+
+    private static final int PAGE = 1000;
+    private static final int BATCH = 100;
+    private static final int SAMPLE = 100;
+
+    private final Environment environment;
+    private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
+    private final InternalRequests internalRequests;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private int sent;
+    private int failed;
+
+    @Value("${phonebook.startup.warm-up-iterations:200}")
+    private int iterations;
+
+    @Value("${phonebook.startup.preload-users:1000}")
+    private int preloadUsers;
+
+    @Value("${phonebook.startup.exit-after-warm-up:false}")
+    private boolean exitAfterWarmUp;
+
+    public WarmUp(Environment environment, ApplicationContext applicationContext, ObjectMapper objectMapper,
+                  InternalRequests internalRequests) {
+        this.environment = environment;
+        this.applicationContext = applicationContext;
+        this.objectMapper = objectMapper;
+        this.internalRequests = internalRequests;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        String base = "http://localhost:" + environment.getProperty("local.server.port", "8080");
+        try {
+            List<JsonNode> users = preload(base);
+            List<JsonNode> phones = list(base + "/phones?limit=" + SAMPLE);
+            for (int i = 0; i < iterations; i++) {
+                for (String path : paths(i, users, phones)) {
+                    get(base + path);
+                }
+            }
+            log.info("Warm-up sent {} requests ({} failed) and preloaded {} users in {} ms", sent, failed,
+                    users.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (IOException e) {
+            log.warn("Warm-up stopped after {} requests", sent, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void exitAfterWarmUp() {
+        if (exitAfterWarmUp) {
+            SpringApplication.exit(applicationContext);
+        }
+    }
+
+    /**
+     * Pages through the first users and looks them up in batches, which puts them in the user cache.
+     */
+    private List<JsonNode> preload(String base) throws IOException, InterruptedException {
+        List<JsonNode> users = new ArrayList<>();
+        long after = 0;
+        while (users.size() < preloadUsers) {
+            JsonNode page = json(base + "/users?limit=" + Math.min(PAGE, preloadUsers - users.size())
+                    + "&after=" + after);
+            if (page == null) {
+                break;
+            }
+            page.path("response").forEach(users::add);
+            if (!page.path("next").isNumber()) {
+                break;
+            }
+            after = page.path("next").asLong();
+        }
+        for (int from = 0; from < users.size(); from += BATCH) {
+            get(base + "/users?ids=" + users.subList(from, Math.min(from + BATCH, users.size())).stream()
+                    .map(user -> user.path("id").asText())
+                    .collect(Collectors.joining(",")));
+        }
+        return users;
+    }
+
+    private static List<String> paths(int iteration, List<JsonNode> users, List<JsonNode> phones) {
+        List<String> paths = new ArrayList<>();
+        paths.add("/users?limit=20");
+        paths.add("/users?limit=20&expand=phones");
+        paths.add("/phones?limit=20");
+        if (users.isEmpty()) {
+            paths.add("/users/0");
+        } else {
+            JsonNode user = users.get(iteration % users.size());
+            String name = user.path("name").asText();
+            paths.add("/users/" + user.path("id").asText());
+            paths.add("/users/" + user.path("id").asText() + "/phones");
+            if (!name.isEmpty()) {
+                paths.add("/users?prefix=true&name=" + encode(name.substring(0, Math.min(3, name.length()))));
+            }
+        }
+        if (phones.isEmpty()) {
+            paths.add("/phones/0");
+        } else {
+            JsonNode phone = phones.get(iteration % phones.size());
+            String number = phone.path("number").asText();
+            String digits = number.replaceAll("\\D", "");
+            paths.add("/phones/" + phone.path("id").asText());
+            paths.add("/phones?number=" + encode(number));
+            if (!digits.isEmpty()) {
+                paths.add("/phones/suggest?prefix=" + digits.substring(0, Math.min(4, digits.length())));
+            }
+        }
+        return paths;
+    }
+
+    private List<JsonNode> list(String url) throws IOException, InterruptedException {
+        List<JsonNode> rows = new ArrayList<>();
+        JsonNode body = json(url);
+        if (body != null) {
+            body.path("response").forEach(rows::add);
+        }
+        return rows;
+    }
+
+    private JsonNode json(String url) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(url, HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+    }
+
+    private void get(String url) throws IOException, InterruptedException {
+        send(url, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private <T> HttpResponse<T> send(String url, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .header(InternalRequests.HEADER, internalRequests.token())
+                .GET()
+                .build();
+        HttpResponse<T> response = client.send(request, handler);
+        sent++;
+        if (response.statusCode() >= 500) {
+            failed++;
+        }
+        return response;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
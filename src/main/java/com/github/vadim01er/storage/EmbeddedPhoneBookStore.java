@@ -0,0 +1,223 @@
+package com.github.vadim01er.storage;
+
+import com.github.vadim01er.entity.*;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.service.ChangeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Serves reads from a {@link MemoryPhoneBook} replicated from the change feed.
+ * Every polled page is appended to a write-ahead log before it is applied, and the book is snapshotted
+ * once the log grows past {@code phonebook.storage.snapshot-every} records, so a restart loads the snapshot,
+ * replays the log and only catches up on what the feed gained while the node was down.
+ * Without a snapshot the book is bootstrapped from a paged scan of the tables, taken after reading the feed
+ * head so that nothing committed during the scan is missed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "phonebook.storage.mode", havingValue = "embedded")
+public class EmbeddedPhoneBookStore implements PhoneBookStore {
+
+    private static final int PAGE = 1000;
+    private static final String SNAPSHOT = "snapshot";
+    private static final String LOG = "wal";
+
+    private final ChangeService changeService;
+    private final UserRepo userRepo;
+    private final PhoneRepo phoneRepo;
+    private final Path dir;
+    private final long pollMillis;
+    private final long snapshotEvery;
+    private final MemoryPhoneBook book = new MemoryPhoneBook();
+    private final ScheduledExecutorService sync = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WriteAheadLog wal;
+    private long token;
+    private long logged;
+
+    public EmbeddedPhoneBookStore(ChangeService changeService, UserRepo userRepo, PhoneRepo phoneRepo,
+                                  @Value("${phonebook.storage.dir:data}") String dir,
+                                  @Value("${phonebook.storage.poll-millis:200}") long pollMillis,
+                                  @Value("${phonebook.storage.snapshot-every:100000}") long snapshotEvery) {
+        this.changeService = changeService;
+        this.userRepo = userRepo;
+        this.phoneRepo = phoneRepo;
+        this.dir = Paths.get(dir);
+        this.pollMillis = pollMillis;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        Path snapshot = dir.resolve(SNAPSHOT);
+        long started = System.nanoTime();
+        if (Files.exists(snapshot)) {
+            token = SnapshotFile.read(snapshot, book);
+        } else {
+            token = bootstrap();
+        }
+        long snapshotToken = token;
+        List<Mutation> replayed = new ArrayList<>();
+        wal = WriteAheadLog.open(dir.resolve(LOG), mutation -> {
+            if (mutation.getSeq() > snapshotToken) {
+                replayed.add(mutation);
+            }
+        });
+        book.apply(replayed);
+        logged = replayed.size();
+        for (Mutation mutation : replayed) {
+            token = Math.max(token, mutation.getSeq());
+        }
+        if (!Files.exists(snapshot)) {
+            snapshot();
+        }
+        log.info("Loaded {} users and {} phones at token {} in {} ms ({} log records)", book.userCount(),
+                book.phoneCount(), token, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), logged);
+        sync.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        sync.shutdown();
+        sync.awaitTermination(10, TimeUnit.SECONDS);
+        wal.close();
+    }
+
+    @Override
+    public User findUser(long id) {
+        return book.user(id);
+    }
+
+    @Override
+    public List<User> findUsers(List<Long> ids) {
+        return ids.stream().map(id -> id == null ? null : book.user(id)).collect(Collectors.toList());
+    }
+
+    @Override
+    public Phone findPhone(long id) {
+        return book.phoneById(id);
+    }
+
+    @Override
+    public List<Phone> findPhonesByNumber(long normalizedNumber) {
+        return book.phonesByNumber(normalizedNumber);
+    }
+
+    @Override
+    public List<List<Phone>> findPhonesByNumbers(List<Long> normalizedNumbers) {
+        return normalizedNumbers.stream()
+                .map(key -> key == null ? Collections.<Phone>emptyList() : book.phonesByNumber(key))
+                .collect(Collectors.toList());
+    }
+
+    private long bootstrap() {
+        long head = changeService.head();
+        List<Mutation> batch = new ArrayList<>(PAGE);
+        long after = 0;
+        List<UserSummary> users;
+        do {
+            users = userRepo.findSummaryPage(after, PageRequest.of(0, PAGE));
+            batch.clear();
+            for (UserSummary user : users) {
+                batch.add(toMutation(head, user));
+                after = user.getId();
+            }
+            book.apply(batch);
+        } while (users.size() == PAGE);
+        after = 0;
+        List<PhoneRow> phones;
+        do {
+            phones = phoneRepo.findRowPage(after, PageRequest.of(0, PAGE));
+            batch.clear();
+            for (PhoneRow phone : phones) {
+                batch.add(toMutation(head, phone));
+                after = phone.getId();
+            }
+            book.apply(batch);
+        } while (phones.size() == PAGE);
+        return head;
+    }
+
+    private void poll() {
+        try {
+            List<ChangeEntry> page;
+            do {
+                page = changeService.findPage(token, PAGE);
+                if (page.isEmpty()) {
+                    return;
+                }
+                List<Mutation> mutations = new ArrayList<>(page.size());
+                for (ChangeEntry entry : page) {
+                    Mutation mutation = toMutation(entry);
+                    if (mutation != null) {
+                        mutations.add(mutation);
+                    }
+                }
+                wal.append(mutations);
+                book.apply(mutations);
+                token = page.get(page.size() - 1).getSeq();
+                logged += mutations.size();
+                if (logged >= snapshotEvery) {
+                    snapshot();
+                }
+            } while (page.size() == PAGE);
+        } catch (Exception e) {
+            log.warn("Change feed sync stopped at token {}, retrying", token, e);
+        }
+    }
+
+    private void snapshot() throws IOException {
+        SnapshotFile.write(dir.resolve(SNAPSHOT), book, token);
+        wal.reset();
+        logged = 0;
+    }
+
+    private static Mutation toMutation(ChangeEntry entry) {
+        if (entry.getOperation() == Change.Operation.DELETE) {
+            return Mutation.delete(entry.getType() == Change.Type.USER
+                    ? Mutation.Kind.USER_DELETE : Mutation.Kind.PHONE_DELETE, entry.getSeq(), entry.getId());
+        }
+        if (entry.getData() instanceof UserSummary) {
+            return toMutation(entry.getSeq(), (UserSummary) entry.getData());
+        }
+        if (entry.getData() instanceof PhoneRow) {
+            return toMutation(entry.getSeq(), (PhoneRow) entry.getData());
+        }
+        return null;
+    }
+
+    private static Mutation toMutation(long seq, UserSummary user) {
+        return Mutation.userUpsert(seq, user.getId(), user.getVersion() == null ? 0 : user.getVersion(),
+                user.getName());
+    }
+
+    private static Mutation toMutation(long seq, PhoneRow phone) {
+        return Mutation.phoneUpsert(seq, phone.getId(), phone.getUserId(), phone.getVersion(),
+                phone.getNormalizedNumber() == null ? 0 : phone.getNormalizedNumber(), phone.getName(),
+                phone.getNumber());
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.vadim01er.storage;
+
+import com.github.vadim01er.cache.LookupCache;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.sharding.ShardRouter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reads through the lookup caches into the repositories; batch lookups load all cache misses in one query,
+ * registered with the cache before it runs so that writes committing meanwhile are not cached over.
+ * Cache misses load inside a read-write transaction, so that they are read from the primary rather than from a
+ * lagging replica whose value would then be served for the whole TTL.
+ */
+@Component
+@ConditionalOnProperty(name = "phonebook.storage.mode", havingValue = "jpa", matchIfMissing = true)
+public class JpaPhoneBookStore implements PhoneBookStore {
+
+    private final UserRepo userRepo;
+    private final PhoneRepo phoneRepo;
+    private final LookupCache<Long, User> userCache;
+    private final LookupCache<Long, Phone> phoneCache;
+    private final LookupCache<Long, List<Phone>> numberCache;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate primary;
+
+    public JpaPhoneBookStore(UserRepo userRepo, PhoneRepo phoneRepo, LookupCache<Long, User> userCache,
+                             LookupCache<Long, Phone> phoneCache, LookupCache<Long, List<Phone>> numberCache,
+                             ShardRouter shardRouter, PlatformTransactionManager transactionManager) {
+        this.userRepo = userRepo;
+        this.phoneRepo = phoneRepo;
+        this.userCache = userCache;
+        this.phoneCache = phoneCache;
+        this.numberCache = numberCache;
+        this.shardRouter = shardRouter;
+        this.primary = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public User findUser(long id) {
+        return userCache.get(id, key -> onPrimary(() -> userRepo.findWithPhoneById(key).orElse(null)));
+    }
+
+    @Override
+    public List<User> findUsers(List<Long> ids) {
+        Map<Long, User> found = userCache.getAll(new LinkedHashSet<>(ids), misses -> onPrimary(
+                () -> shardRouter.partition(misses, userRepo::findWithPhoneByIdIn)).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity(), (first, second) -> first)));
+        return ids.stream().map(found::get).collect(Collectors.toList());
+    }
+
+    @Override
+    public Phone findPhone(long id) {
+        return phoneCache.get(id, key -> onPrimary(() -> phoneRepo.findById(key).orElse(null)));
+    }
+
+    @Override
+    public List<Phone> findPhonesByNumber(long normalizedNumber) {
+        return numberCache.get(normalizedNumber,
+                key -> Collections.unmodifiableList(onPrimary(() -> shardRouter.merge(
+                        () -> phoneRepo.findByNormalizedNumber(key), JpaPhoneBookStore::ownerOf,
+                        Comparator.comparing(Phone::getId), Integer.MAX_VALUE))));
+    }
+
+    @Override
+    public List<List<Phone>> findPhonesByNumbers(List<Long> normalizedNumbers) {
+        Set<Long> keys = new LinkedHashSet<>(normalizedNumbers);
+        keys.remove(null);
+        Map<Long, List<Phone>> found = numberCache.getAll(keys, misses -> {
+            Map<Long, List<Phone>> loaded = onPrimary(() -> shardRouter.fanOut(
+                    () -> phoneRepo.findByNormalizedNumberIn(misses), JpaPhoneBookStore::ownerOf)).stream()
+                    .collect(Collectors.groupingBy(Phone::getNormalizedNumber));
+            Map<Long, List<Phone>> lists = new HashMap<>();
+            misses.forEach(key -> lists.put(key,
+                    Collections.unmodifiableList(loaded.getOrDefault(key, Collections.emptyList()))));
+            return lists;
+        });
+        return normalizedNumbers.stream()
+                .map(key -> key == null ? Collections.<Phone>emptyList() : found.get(key))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs a cache load on the primary. Sharded loads run as they are: shards have no replicas, and each shard
+     * query opens its own transaction on the shard.
+     */
+    private <T> T onPrimary(Supplier<T> load) {
+        return shardRouter.isSharded() ? load.get() : primary.execute(status -> load.get());
+    }
+
+    private static long ownerOf(Phone phone) {
+        return phone.getUser().getId();
+    }
+}
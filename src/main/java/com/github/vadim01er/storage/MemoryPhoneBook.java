@@ -0,0 +1,300 @@
+package com.github.vadim01er.storage;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The embedded phone book: users and phones in parallel primitive arrays indexed by slot, {@link LongIntMap}s
+ * from id to slot, and phones chained per owner and per normalized number through {@code int[]} next-links,
+ * so a lookup touches no boxed keys and no per-row objects until the result is built.
+ * One writer applies mutations under the write lock; any number of readers share the read lock.
+ */
+final class MemoryPhoneBook {
+
+    private static final int NONE = -1;
+    private static final long NO_NUMBER = 0;
+    private static final int MAX_INTERNED = 10_000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntMap userSlots = new LongIntMap(1024);
+    private long[] userIds = new long[1024];
+    private long[] userVersions = new long[1024];
+    private String[] userNames = new String[1024];
+    private final Slots freeUsers = new Slots();
+
+    private final LongIntMap phoneSlots = new LongIntMap(1024);
+    private final LongIntMap phonesOfUser = new LongIntMap(1024);
+    private final LongIntMap phonesOfNumber = new LongIntMap(1024);
+    private long[] phoneIds = new long[1024];
+    private long[] phoneUsers = new long[1024];
+    private long[] phoneVersions = new long[1024];
+    private long[] phoneNormalized = new long[1024];
+    private String[] phoneNames = new String[1024];
+    private String[] phoneNumbers = new String[1024];
+    private int[] nextOfUser = new int[1024];
+    private int[] nextOfNumber = new int[1024];
+    private final Slots freePhones = new Slots();
+
+    private final Map<String, String> interned = new HashMap<>();
+
+    void apply(List<Mutation> mutations) {
+        lock.writeLock().lock();
+        try {
+            for (Mutation mutation : mutations) {
+                switch (mutation.getKind()) {
+                    case USER_UPSERT:
+                        upsertUser(mutation.getId(), mutation.getVersion(), mutation.getName());
+                        break;
+                    case USER_DELETE:
+                        deleteUser(mutation.getId());
+                        break;
+                    case PHONE_UPSERT:
+                        upsertPhone(mutation);
+                        break;
+                    case PHONE_DELETE:
+                        deletePhone(mutation.getId());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown mutation " + mutation.getKind());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    User user(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = userSlots.get(id);
+            if (slot == NONE) {
+                return null;
+            }
+            User user = new User(userNames[slot]);
+            user.setId(id);
+            user.setVersion(userVersions[slot]);
+            for (int phone = phonesOfUser.get(id); phone != NONE; phone = nextOfUser[phone]) {
+                Phone built = phone(phone);
+                built.setUser(user);
+                user.getPhone().add(built);
+            }
+            return user;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Phone phoneById(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = phoneSlots.get(id);
+            return slot == NONE ? null : phone(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Phone> phonesByNumber(long normalizedNumber) {
+        lock.readLock().lock();
+        try {
+            List<Phone> phones = new ArrayList<>(2);
+            for (int slot = phonesOfNumber.get(normalizedNumber); slot != NONE; slot = nextOfNumber[slot]) {
+                phones.add(phone(slot));
+            }
+            phones.sort(Comparator.comparing(Phone::getId));
+            return phones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int userCount() {
+        return userSlots.size();
+    }
+
+    int phoneCount() {
+        return phoneSlots.size();
+    }
+
+    /**
+     * Visits every row as the mutation that would recreate it, users first.
+     */
+    void forEach(long seq, MutationVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < freeUsers.highWater; slot++) {
+                if (userIds[slot] != 0) {
+                    visitor.visit(Mutation.userUpsert(seq, userIds[slot], userVersions[slot], userNames[slot]));
+                }
+            }
+            for (int slot = 0; slot < freePhones.highWater; slot++) {
+                if (phoneIds[slot] != 0) {
+                    visitor.visit(Mutation.phoneUpsert(seq, phoneIds[slot], phoneUsers[slot], phoneVersions[slot],
+                            phoneNormalized[slot], phoneNames[slot], phoneNumbers[slot]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void upsertUser(long id, long version, String name) {
+        int slot = userSlots.get(id);
+        if (slot == NONE) {
+            slot = freeUsers.take();
+            if (slot == userIds.length) {
+                int capacity = slot * 2;
+                userIds = Arrays.copyOf(userIds, capacity);
+                userVersions = Arrays.copyOf(userVersions, capacity);
+                userNames = Arrays.copyOf(userNames, capacity);
+            }
+            userSlots.put(id, slot);
+            userIds[slot] = id;
+        }
+        userVersions[slot] = version;
+        userNames[slot] = name;
+    }
+
+    private void deleteUser(long id) {
+        int slot = userSlots.get(id);
+        if (slot == NONE) {
+            return;
+        }
+        userSlots.remove(id);
+        userIds[slot] = 0;
+        userNames[slot] = null;
+        freeUsers.release(slot);
+    }
+
+    private void upsertPhone(Mutation mutation) {
+        long id = mutation.getId();
+        int slot = phoneSlots.get(id);
+        if (slot == NONE) {
+            slot = freePhones.take();
+            if (slot == phoneIds.length) {
+                growPhones(slot * 2);
+            }
+            phoneSlots.put(id, slot);
+            phoneIds[slot] = id;
+        } else {
+            unlink(phonesOfUser, phoneUsers[slot], nextOfUser, slot);
+            unlink(phonesOfNumber, phoneNormalized[slot], nextOfNumber, slot);
+        }
+        phoneUsers[slot] = mutation.getUserId();
+        phoneVersions[slot] = mutation.getVersion();
+        phoneNormalized[slot] = mutation.getNormalizedNumber();
+        phoneNames[slot] = intern(mutation.getName());
+        phoneNumbers[slot] = mutation.getNumber();
+        link(phonesOfUser, mutation.getUserId(), nextOfUser, slot);
+        link(phonesOfNumber, mutation.getNormalizedNumber(), nextOfNumber, slot);
+    }
+
+    private void deletePhone(long id) {
+        int slot = phoneSlots.get(id);
+        if (slot == NONE) {
+            return;
+        }
+        unlink(phonesOfUser, phoneUsers[slot], nextOfUser, slot);
+        unlink(phonesOfNumber, phoneNormalized[slot], nextOfNumber, slot);
+        phoneSlots.remove(id);
+        phoneIds[slot] = 0;
+        phoneNames[slot] = null;
+        phoneNumbers[slot] = null;
+        freePhones.release(slot);
+    }
+
+    private void growPhones(int capacity) {
+        phoneIds = Arrays.copyOf(phoneIds, capacity);
+        phoneUsers = Arrays.copyOf(phoneUsers, capacity);
+        phoneVersions = Arrays.copyOf(phoneVersions, capacity);
+        phoneNormalized = Arrays.copyOf(phoneNormalized, capacity);
+        phoneNames = Arrays.copyOf(phoneNames, capacity);
+        phoneNumbers = Arrays.copyOf(phoneNumbers, capacity);
+        nextOfUser = Arrays.copyOf(nextOfUser, capacity);
+        nextOfNumber = Arrays.copyOf(nextOfNumber, capacity);
+    }
+
+    private static void link(LongIntMap heads, long key, int[] next, int slot) {
+        if (key == NO_NUMBER) {
+            next[slot] = NONE;
+            return;
+        }
+        next[slot] = heads.get(key);
+        heads.put(key, slot);
+    }
+
+    private static void unlink(LongIntMap heads, long key, int[] next, int slot) {
+        if (key == NO_NUMBER) {
+            return;
+        }
+        int head = heads.get(key);
+        if (head == slot) {
+            if (next[slot] == NONE) {
+                heads.remove(key);
+            } else {
+                heads.put(key, next[slot]);
+            }
+            return;
+        }
+        for (int current = head; current != NONE; current = next[current]) {
+            if (next[current] == slot) {
+                next[current] = next[slot];
+                return;
+            }
+        }
+    }
+
+    private Phone phone(int slot) {
+        Phone phone = new Phone();
+        phone.setId(phoneIds[slot]);
+        phone.setName(phoneNames[slot]);
+        phone.setNumber(phoneNumbers[slot]);
+        phone.setNormalizedNumber(phoneNormalized[slot] == NO_NUMBER ? null : phoneNormalized[slot]);
+        phone.setVersion(phoneVersions[slot]);
+        return phone;
+    }
+
+    private String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String known = interned.get(value);
+        if (known != null) {
+            return known;
+        }
+        if (interned.size() < MAX_INTERNED) {
+            interned.put(value, value);
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    interface MutationVisitor {
+        void visit(Mutation mutation);
+    }
+
+    /**
+     * Free-slot stack over a high-water mark.
+     */
+    private static final class Slots {
+        private int[] free = new int[16];
+        private int size;
+        private int highWater;
+
+        private int take() {
+            return size > 0 ? free[--size] : highWater++;
+        }
+
+        private void release(int slot) {
+            if (size == free.length) {
+                free = Arrays.copyOf(free, size * 2);
+            }
+            free[size++] = slot;
+        }
+    }
+}
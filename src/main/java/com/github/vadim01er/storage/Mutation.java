@@ -0,0 +1,39 @@
+package com.github.vadim01er.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One applied change of the embedded phone book, as written to the write-ahead log.
+ * {@code seq} is the change feed token the mutation came from.
+ */
+@Getter
+@AllArgsConstructor
+final class Mutation {
+
+    enum Kind {
+        USER_UPSERT, USER_DELETE, PHONE_UPSERT, PHONE_DELETE
+    }
+
+    private final Kind kind;
+    private final long seq;
+    private final long id;
+    private final long userId;
+    private final long version;
+    private final long normalizedNumber;
+    private final String name;
+    private final String number;
+
+    static Mutation userUpsert(long seq, long id, long version, String name) {
+        return new Mutation(Kind.USER_UPSERT, seq, id, 0, version, 0, name, null);
+    }
+
+    static Mutation phoneUpsert(long seq, long id, long userId, long version, long normalizedNumber,
+                                String name, String number) {
+        return new Mutation(Kind.PHONE_UPSERT, seq, id, userId, version, normalizedNumber, name, number);
+    }
+
+    static Mutation delete(Kind kind, long seq, long id) {
+        return new Mutation(kind, seq, id, 0, 0, 0, null, null);
+    }
+}
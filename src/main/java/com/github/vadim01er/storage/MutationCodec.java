@@ -0,0 +1,106 @@
+package com.github.vadim01er.storage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary form of a {@link Mutation} shared by the write-ahead log and the snapshots:
+ * {@code [int length][int crc32][payload]}, strings as length-prefixed UTF-8 with {@code -1} for {@code null}.
+ */
+final class MutationCodec {
+
+    static final int HEADER_BYTES = 8;
+    static final int MAX_PAYLOAD_BYTES = 1 << 20;
+
+    private static final Mutation.Kind[] KINDS = Mutation.Kind.values();
+
+    private MutationCodec() {
+    }
+
+    static byte[] encode(Mutation mutation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(mutation.getKind().ordinal());
+            out.writeLong(mutation.getSeq());
+            out.writeLong(mutation.getId());
+            out.writeLong(mutation.getUserId());
+            out.writeLong(mutation.getVersion());
+            out.writeLong(mutation.getNormalizedNumber());
+            writeString(out, mutation.getName());
+            writeString(out, mutation.getNumber());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        int length = record.length - HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_BYTES, length);
+        putInt(record, 0, length);
+        putInt(record, 4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * @return the payload length announced by a record header, or {@code -1} if it cannot be a valid record
+     */
+    static int length(byte[] header) {
+        int length = getInt(header, 0);
+        return length > 0 && length <= MAX_PAYLOAD_BYTES ? length : -1;
+    }
+
+    /**
+     * @return the mutation, or {@code null} if the payload does not match the checksum in {@code header}
+     */
+    static Mutation decode(byte[] header, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != getInt(header, 4)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int kind = in.readUnsignedByte();
+            if (kind >= KINDS.length) {
+                return null;
+            }
+            return new Mutation(KINDS[kind], in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                    in.readLong(), readString(in), readString(in));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+}
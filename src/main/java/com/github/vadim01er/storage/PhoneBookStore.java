@@ -0,0 +1,29 @@
+package com.github.vadim01er.storage;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+
+import java.util.List;
+
+/**
+ * Read side of the phone book behind {@code UserService}/{@code PhoneService}; writes always go through JPA.
+ * {@code phonebook.storage.mode} selects {@link JpaPhoneBookStore} or {@link EmbeddedPhoneBookStore}.
+ */
+public interface PhoneBookStore {
+
+    User findUser(long id);
+
+    /**
+     * @return users in the order of {@code ids}, {@code null} where there is none
+     */
+    List<User> findUsers(List<Long> ids);
+
+    Phone findPhone(long id);
+
+    List<Phone> findPhonesByNumber(long normalizedNumber);
+
+    /**
+     * @return for every number, in order, the phones having it; {@code null} numbers match nothing
+     */
+    List<List<Phone>> findPhonesByNumbers(List<Long> normalizedNumbers);
+}
@@ -0,0 +1,150 @@
+package com.github.vadim01er.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Point-in-time image of a {@link MemoryPhoneBook}: a header with the change feed token it covers,
+ * followed by one {@link MutationCodec} record per row. Written and read through memory-mapped windows,
+ * written to a temporary file first and atomically renamed over the previous snapshot.
+ */
+final class SnapshotFile {
+
+    private static final long MAGIC = 0x50484F4E45424B31L;
+    private static final int HEADER_BYTES = 24;
+    private static final long WINDOW = 64L << 20;
+    private static final int APPLY_BATCH = 10_000;
+
+    private SnapshotFile() {
+    }
+
+    static void write(Path path, MemoryPhoneBook book, long token) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long[] count = new long[1];
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Window window = new Window(channel, HEADER_BYTES);
+            try {
+                book.forEach(token, mutation -> {
+                    window.put(MutationCodec.encode(mutation));
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long end = window.finish();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC).putLong(token).putLong(count[0]);
+            header.flip();
+            channel.write(header, 0);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the snapshot at {@code path} into {@code book}.
+     *
+     * @return the change feed token the snapshot covers
+     * @throws IOException if the file is not a complete snapshot
+     */
+    static long read(Path path, MemoryPhoneBook book) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated snapshot " + path);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getLong() != MAGIC) {
+                throw new IOException("Not a snapshot " + path);
+            }
+            long token = header.getLong();
+            long count = header.getLong();
+
+            List<Mutation> batch = new ArrayList<>(APPLY_BATCH);
+            byte[] recordHeader = new byte[MutationCodec.HEADER_BYTES];
+            long position = HEADER_BYTES;
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            for (long i = 0; i < count; i++) {
+                if (window == null || position + MutationCodec.HEADER_BYTES > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+                }
+                window.position((int) (position - windowStart)).get(recordHeader);
+                int length = MutationCodec.length(recordHeader);
+                if (length < 0 || position + MutationCodec.HEADER_BYTES + length > size) {
+                    throw new IOException("Corrupt snapshot " + path + " at " + position);
+                }
+                if (position + MutationCodec.HEADER_BYTES + length > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+                    window.position(MutationCodec.HEADER_BYTES);
+                }
+                byte[] payload = new byte[length];
+                window.get(payload);
+                Mutation mutation = MutationCodec.decode(recordHeader, payload);
+                if (mutation == null) {
+                    throw new IOException("Corrupt snapshot " + path + " at " + position);
+                }
+                batch.add(mutation);
+                if (batch.size() == APPLY_BATCH) {
+                    book.apply(batch);
+                    batch.clear();
+                }
+                position += MutationCodec.HEADER_BYTES + length;
+            }
+            book.apply(batch);
+            return token;
+        }
+    }
+
+    /**
+     * Sequential writer over consecutive read-write mappings of {@code WINDOW} bytes.
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long start;
+
+        private Window(FileChannel channel, long position) {
+            this.channel = channel;
+            remap(position);
+        }
+
+        private void put(byte[] record) {
+            if (buffer.remaining() < record.length) {
+                remap(start + buffer.position());
+            }
+            buffer.put(record);
+        }
+
+        private long finish() {
+            buffer.force();
+            return start + buffer.position();
+        }
+
+        private void remap(long position) {
+            try {
+                if (buffer != null) {
+                    buffer.force();
+                }
+                start = position;
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, WINDOW);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.vadim01er.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of the mutations applied since the last snapshot, one CRC-checked record per mutation
+ * and one {@code fsync} per appended batch. A torn or corrupt tail left by a crash is cut off on open.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private final FileChannel channel;
+
+    private WriteAheadLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the log at {@code path}, feeding every intact record to {@code replay} in order and truncating
+     * whatever follows the last one.
+     */
+    static WriteAheadLog open(Path path, Consumer<Mutation> replay) throws IOException {
+        long valid = 0;
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                byte[] header = new byte[MutationCodec.HEADER_BYTES];
+                while (readFully(in, header)) {
+                    int length = MutationCodec.length(header);
+                    if (length < 0) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    if (!readFully(in, payload)) {
+                        break;
+                    }
+                    Mutation mutation = MutationCodec.decode(header, payload);
+                    if (mutation == null) {
+                        break;
+                    }
+                    replay.accept(mutation);
+                    valid += MutationCodec.HEADER_BYTES + length;
+                }
+            }
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+        return new WriteAheadLog(channel);
+    }
+
+    synchronized void append(List<Mutation> mutations) throws IOException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(mutations.size() * 64);
+        for (Mutation mutation : mutations) {
+            batch.write(MutationCodec.encode(mutation));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Drops every record; called once a snapshot covering them is durable.
+     */
+    synchronized void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static boolean readFully(DataInputStream in, byte[] bytes) throws IOException {
+        try {
+            in.readFully(bytes);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.vadim01er.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * A phone number such as {@code +7(999)123-45-67}, {@code 89991234567} or {@code 999123-4567}.
+ * {@code null} is valid; combine with {@code @NotNull} where the number is required.
+ */
+@Documented
+@Constraint(validatedBy = PhoneNumberValidator.class)
+@Target({FIELD, METHOD, PARAMETER, ANNOTATION_TYPE, TYPE_USE})
+@Retention(RUNTIME)
+public @interface PhoneNumber {
+
+    String message() default "must be a phone number like +7(999)123-45-67";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
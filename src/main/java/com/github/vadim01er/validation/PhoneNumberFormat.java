@@ -0,0 +1,118 @@
+package com.github.vadim01er.validation;
+
+/**
+ * Single-pass, allocation-free parser for the accepted phone number syntax
+ * {@code +? d? (? ddd )? ddd -? dd -? dd}.
+ * The digits are returned behind a sentinel {@code 1} (so {@code 0991234567} comes back as {@code 10991234567})
+ * which keeps leading zeros and the digit count without a second value.
+ */
+public final class PhoneNumberFormat {
+
+    public static final long INVALID = -1;
+
+    private static final int NATIONAL_LENGTH = 10;
+    private static final int MAX_DIGITS = 18;
+    private static final int NONE = -1;
+
+    private PhoneNumberFormat() {
+    }
+
+    /**
+     * @return the sentinel-prefixed digits, or {@link #INVALID} if the text does not follow the syntax
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        long digits = 0;
+        int count = 0;
+        int open = NONE;
+        int close = NONE;
+        int firstDash = NONE;
+        int secondDash = NONE;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++count > NATIONAL_LENGTH + 1) {
+                    return INVALID;
+                }
+                digits = digits * 10 + (c - '0');
+            } else if (c == '+') {
+                if (i != 0) {
+                    return INVALID;
+                }
+            } else if (c == '(') {
+                if (open != NONE || close != NONE || firstDash != NONE) {
+                    return INVALID;
+                }
+                open = count;
+            } else if (c == ')') {
+                if (close != NONE || firstDash != NONE) {
+                    return INVALID;
+                }
+                close = count;
+            } else if (c == '-') {
+                if (secondDash != NONE || firstDash == count) {
+                    return INVALID;
+                }
+                if (firstDash == NONE) {
+                    firstDash = count;
+                } else {
+                    secondDash = count;
+                }
+            } else {
+                return INVALID;
+            }
+        }
+        if (count < NATIONAL_LENGTH) {
+            return INVALID;
+        }
+        int lead = count - NATIONAL_LENGTH;
+        if (open != NONE && open != lead
+                || close != NONE && close != lead + 3
+                || firstDash != NONE && firstDash != lead + 6 && firstDash != lead + 8
+                || secondDash != NONE && (firstDash != lead + 6 || secondDash != lead + 8)) {
+            return INVALID;
+        }
+        return pow10(count) + digits;
+    }
+
+    /**
+     * Lenient variant for stored data: keeps every digit and ignores everything else.
+     *
+     * @return the sentinel-prefixed digits, or {@link #INVALID} if there are none or more than 18
+     */
+    public static long digitsOf(CharSequence text) {
+        long digits = 0;
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++count > MAX_DIGITS) {
+                    return INVALID;
+                }
+                digits = digits * 10 + (c - '0');
+            }
+        }
+        return count == 0 ? INVALID : pow10(count) + digits;
+    }
+
+    public static int length(long parsed) {
+        int count = 0;
+        while (parsed >= 10) {
+            parsed /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    public static long digits(long parsed) {
+        return parsed - pow10(length(parsed));
+    }
+
+    static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.vadim01er.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class PhoneNumberValidator implements ConstraintValidator<PhoneNumber, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || PhoneNumberFormat.parse(value) != PhoneNumberFormat.INVALID;
+    }
+}
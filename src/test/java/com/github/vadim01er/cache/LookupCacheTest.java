@@ -0,0 +1,217 @@
+package com.github.vadim01er.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LookupCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void expiresAfterTtl() throws Exception {
+        LookupCache<Long, String> cache = cache(10, 50, 0);
+        assertEquals("1", cache.get(1L, this::load));
+        assertEquals("1", cache.get(1L, this::load));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(100);
+        assertEquals("1", cache.get(1L, this::load));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LookupCache<Long, String> cache = cache(2, 60_000, 0);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+        cache.get(1L, this::load);
+        cache.get(3L, this::load);
+
+        assertNull(cache.peek(2L));
+        assertEquals("1", cache.peek(1L));
+        assertEquals("3", cache.peek(3L));
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    void cachesNotFoundOnlyWithNegativeTtl() {
+        Function<Long, String> missing = key -> {
+            loads.incrementAndGet();
+            return "";
+        };
+        LookupCache<Long, String> uncached = cache(10, 60_000, 0);
+        uncached.get(1L, missing);
+        uncached.get(1L, missing);
+        assertEquals(2, loads.get());
+
+        loads.set(0);
+        LookupCache<Long, String> cached = cache(10, 60_000, 60_000);
+        cached.get(1L, missing);
+        cached.get(1L, missing);
+        cached.get(2L, key -> null);
+        assertEquals(1, loads.get());
+        assertNull(cached.get(2L, this::load));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        LookupCache<Long, String> cache = cache(10, 60_000, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> cache.get(1L, key -> blockingLoad(key, release))));
+            }
+            awaitCoalesced(cache, threads - 1);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    void evictDuringLoadDetachesIt() throws Exception {
+        LookupCache<Long, String> cache = cache(10, 60_000, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> stale = pool.submit(() -> cache.get(1L, key -> {
+                blockingLoad(key, release);
+                return "stale";
+            }));
+            awaitLoads(1);
+            cache.evict(1L);
+
+            assertEquals("fresh", cache.get(1L, key -> "fresh"));
+            release.countDown();
+            assertEquals("stale", stale.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("fresh", cache.peek(1L));
+    }
+
+    @Test
+    void evictLeavesOtherLoadsAlone() throws Exception {
+        LookupCache<Long, String> cache = cache(10, 60_000, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> loading = pool.submit(() -> cache.get(1L, key -> blockingLoad(key, release)));
+            awaitLoads(1);
+            cache.evict(2L);
+            release.countDown();
+            assertEquals("1", loading.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("1", cache.peek(1L));
+    }
+
+    @Test
+    void getAllLoadsOnlyMissesInOneCall() {
+        LookupCache<Long, String> cache = cache(10, 60_000, 0);
+        cache.get(1L, this::load);
+        List<List<Long>> batches = new ArrayList<>();
+        Map<Long, String> found = cache.getAll(Arrays.asList(1L, 2L, 3L, 2L), keys -> {
+            batches.add(keys);
+            return loadAll(keys);
+        });
+
+        assertEquals(Arrays.asList(Arrays.asList(2L, 3L)), batches);
+        assertEquals("1", found.get(1L));
+        assertEquals("2", found.get(2L));
+        assertEquals("3", found.get(3L));
+        assertEquals("3", cache.peek(3L));
+    }
+
+    @Test
+    void evictDuringBatchLoadDetachesTheKey() throws Exception {
+        LookupCache<Long, String> cache = cache(10, 60_000, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<Long, String>> stale = pool.submit(() -> cache.getAll(Arrays.asList(1L, 2L), keys -> {
+                Map<Long, String> values = loadAll(keys);
+                blockingLoad(0L, release);
+                values.put(1L, "stale");
+                return values;
+            }));
+            awaitLoads(3);
+            cache.evict(1L);
+
+            assertEquals("fresh", cache.get(1L, key -> "fresh"));
+            release.countDown();
+            assertEquals("stale", stale.get(5, TimeUnit.SECONDS).get(1L));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("fresh", cache.peek(1L));
+        assertEquals("2", cache.peek(2L));
+    }
+
+    private LookupCache<Long, String> cache(int maximumSize, long ttlMillis, long negativeTtlMillis) {
+        return new LookupCache<>("test", maximumSize, ttlMillis, negativeTtlMillis, String::isEmpty,
+                UnaryOperator.identity(), new NoSharedStore());
+    }
+
+    private String load(Long key) {
+        loads.incrementAndGet();
+        return String.valueOf(key);
+    }
+
+    private Map<Long, String> loadAll(List<Long> keys) {
+        Map<Long, String> values = new HashMap<>();
+        keys.forEach(key -> values.put(key, load(key)));
+        return values;
+    }
+
+    private String blockingLoad(Long key, CountDownLatch release) {
+        String value = load(key);
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    private void awaitCoalesced(LookupCache<?, ?> cache, long waiting) throws InterruptedException {
+        for (int i = 0; i < 500 && cache.stats().getCoalesced() < waiting; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(waiting, cache.stats().getCoalesced());
+    }
+
+    private void awaitLoads(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && loads.get() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(loads.get() >= count);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.vadim01er.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTest {
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        try (ReplicaRoutingDataSource routing = routing("routing", 1000)) {
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+            routing.check();
+            assertEquals("primary", node(dataSource, false));
+            assertEquals("replica", node(dataSource, true));
+            assertEquals("primary", new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+        }
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        try (ReplicaRoutingDataSource routing = routing("lagging", -1)) {
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+            routing.check();
+            assertEquals("primary", node(dataSource, true));
+        }
+    }
+
+    private static ReplicaRoutingDataSource routing(String name, long maxLagMillis) {
+        HikariDataSource primary = h2(name + "-primary", "primary");
+        HikariDataSource replica = h2(name + "-replica", "replica");
+        return new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), maxLagMillis, 60_000);
+    }
+
+    private static HikariDataSource h2(String database, String node) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPoolName(node);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists node (name varchar(16))");
+        jdbcTemplate.update("insert into node values (?)", node);
+        return dataSource;
+    }
+
+    private static String node(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.vadim01er.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.entity.UserDTO;
+import com.github.vadim01er.service.PhoneService;
+import com.github.vadim01er.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChangeControllerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PhoneService phoneService;
+
+    @Test
+    void changesSince() throws Exception {
+        long since = head();
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("test name phone", "11111111111"));
+        phoneService.deleteById(testPhone.getId());
+        userService.deleteById(testUser.getId());
+        mockMvc.perform(get("/changes").param("since", String.valueOf(since)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", hasSize(6)))
+                .andExpect(jsonPath("$.response[0].type", is("USER")))
+                .andExpect(jsonPath("$.response[0].id", is((int) testUser.getId())))
+                .andExpect(jsonPath("$.response[0].operation", is("UPSERT")))
+                .andExpect(jsonPath("$.response[1].type", is("PHONE")))
+                .andExpect(jsonPath("$.response[1].id", is(testPhone.getId().intValue())))
+                .andExpect(jsonPath("$.response[1].data", nullValue()))
+                .andExpect(jsonPath("$.response[3].type", is("PHONE")))
+                .andExpect(jsonPath("$.response[3].operation", is("DELETE")))
+                .andExpect(jsonPath("$.response[5].type", is("USER")))
+                .andExpect(jsonPath("$.response[5].operation", is("DELETE")));
+    }
+
+    @Test
+    void changesCarryCurrentState() throws Exception {
+        long since = head();
+        User testUser = userService.addUser("test name");
+        userService.replaceUser(testUser.getId(), new UserDTO("new test name"), null);
+        String body = mockMvc.perform(get("/changes").param("since", String.valueOf(since)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", hasSize(2)))
+                .andExpect(jsonPath("$.response[0].data.name", is("new test name")))
+                .andExpect(jsonPath("$.response[1].data.name", is("new test name")))
+                .andReturn().getResponse().getContentAsString();
+        long next = objectMapper.readTree(body).get("next").asLong();
+        mockMvc.perform(get("/changes").param("since", String.valueOf(next)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", hasSize(0)))
+                .andExpect(jsonPath("$.next", is((int) next)));
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void importsRecordedAfterCommit() throws Exception {
+        long since = head();
+        mockMvc.perform(
+                post("/users/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"imported change\"},{\"name\":\"imported change\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object.imported", is(2)));
+        mockMvc.perform(get("/changes").param("since", String.valueOf(since)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", hasSize(2)))
+                .andExpect(jsonPath("$.response[0].type", is("USER")))
+                .andExpect(jsonPath("$.response[0].operation", is("UPSERT")))
+                .andExpect(jsonPath("$.response[0].data.name", is("imported change")))
+                .andExpect(jsonPath("$.response[1].data.name", is("imported change")));
+        userService.findByName("imported change", false, 0, 1000).forEach(user -> userService.deleteById(user.getId()));
+    }
+
+    @Test
+    void changesBadLimit() throws Exception {
+        mockMvc.perform(get("/changes").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void eventsPushed() throws Exception {
+        MvcResult subscription = mockMvc.perform(get("/changes/events").param("types", "user"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        User testUser = userService.addUser("test name");
+        String expected = "\"id\":" + testUser.getId();
+        long deadline = System.currentTimeMillis() + 5000;
+        String body = subscription.getResponse().getContentAsString();
+        while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            body = subscription.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains("event:user"));
+        assertTrue(body.contains(expected + ",\"operation\":\"UPSERT\""));
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void eventsBadType() throws Exception {
+        mockMvc.perform(get("/changes/events").param("types", "user,address"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private long head() throws Exception {
+        long since = 0;
+        while (true) {
+            String body = mockMvc.perform(get("/changes").param("since", String.valueOf(since)).param("limit", "1000"))
+                    .andReturn().getResponse().getContentAsString();
+            long next = objectMapper.readTree(body).get("next").asLong();
+            if (next == since) {
+                return since;
+            }
+            since = next;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.dedup.DuplicateJob;
+import com.github.vadim01er.dedup.DuplicateMerger;
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.json.DuplicateReport;
+import com.github.vadim01er.json.MergeReport;
+import com.github.vadim01er.service.PhoneService;
+import com.github.vadim01er.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DuplicateControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PhoneService phoneService;
+    @Autowired
+    private DuplicateJob duplicateJob;
+    @Autowired
+    private DuplicateMerger duplicateMerger;
+
+    @Test
+    void scanFindsClusters() throws Exception {
+        User first = userService.addUser("Duplicate  Scan-Name");
+        User second = userService.addUser("duplicate scan name.");
+        Phone firstPhone = phoneService.addPhone(first, new PhoneDTO("home", "+7(901)555-01-01"));
+        Phone secondPhone = phoneService.addPhone(second, new PhoneDTO("home", "89015550101"));
+
+        mockMvc.perform(post("/duplicates/scan"))
+                .andExpect(status().isAccepted());
+        awaitJob();
+        mockMvc.perform(get("/duplicates"))
+                .andExpect(status().isOk());
+
+        DuplicateReport report = duplicateJob.getReport();
+        assertTrue(report.getNameClusters().stream().anyMatch(cluster -> cluster.getName()
+                .equals("duplicate scan name") && cluster.getUserIds().equals(Arrays.asList(first.getId(),
+                second.getId()))));
+        assertTrue(report.getNumberClusters().stream().anyMatch(cluster -> cluster.getNumber() == 79015550101L
+                && cluster.getPhoneIds().equals(Arrays.asList(firstPhone.getId(), secondPhone.getId()))));
+
+        userService.deleteById(first.getId());
+        userService.deleteById(second.getId());
+    }
+
+    @Test
+    void mergeUsers() {
+        User first = userService.addUser("duplicate merge name");
+        User second = userService.addUser("Duplicate Merge Name");
+        User renamed = userService.addUser("someone else");
+        Phone kept = phoneService.addPhone(first, new PhoneDTO("home", "89015550202"));
+        phoneService.addPhone(second, new PhoneDTO("home", "+79015550202"));
+        Phone moved = phoneService.addPhone(second, new PhoneDTO("work", "89015550303"));
+
+        MergeReport report = duplicateMerger.merge(Collections.singletonList(
+                Arrays.asList(first.getId(), second.getId(), renamed.getId())), Collections.emptyList());
+
+        assertEquals(1, report.getUsersMerged());
+        assertEquals(2, report.getPhonesMoved());
+        assertEquals(1, report.getPhonesDeleted());
+        assertNull(userService.findById(second.getId()));
+        User survivor = userService.findById(first.getId());
+        assertEquals(2, survivor.getPhone().size());
+        assertTrue(survivor.getPhone().contains(moved));
+        assertEquals(kept.getId(), phoneService.findByNumber("89015550202").get(0).getId());
+
+        userService.deleteById(first.getId());
+        userService.deleteById(renamed.getId());
+    }
+
+    private void awaitJob() throws InterruptedException {
+        for (int i = 0; i < 200 && duplicateJob.isRunning(); i++) {
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.vadim01er.controller;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.service.PhoneService;
+import com.github.vadim01er.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PhoneService phoneService;
+
+    @Test
+    void exportFormats() throws Exception {
+        User testUser = userService.addUser("exported, user");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("exported phone", "88888888888"));
+
+        String csv = export("/export?format=csv");
+        assertTrue(csv.startsWith("user_id,user_name,phone_id,phone_name,number\r\n"));
+        assertTrue(csv.contains(testUser.getId() + ",\"exported, user\"," + testPhone.getId()
+                + ",exported phone,88888888888\r\n"));
+
+        String vcard = export("/export?format=vcard");
+        assertTrue(vcard.contains("UID:phone-" + testPhone.getId() + "\r\n"));
+        assertTrue(vcard.contains("TEL;TYPE=VOICE:88888888888\r\n"));
+        assertTrue(vcard.contains("CATEGORIES:exported\\, user\r\n"));
+
+        String ndjson = export("/export?format=ndjson");
+        assertTrue(ndjson.contains("{\"id\":" + testUser.getId() + ",\"name\":\"exported, user\",\"phone\":[{\"id\":"
+                + testPhone.getId() + ",\"name\":\"exported phone\",\"number\":\"88888888888\"}]}\n"));
+
+        phoneService.deleteById(testPhone.getId());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void exportGzip() throws Exception {
+        MvcResult started = mockMvc.perform(get("/export?format=csv&gzip=true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"phonebook.csv.gz\""))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).startsWith("user_id,"));
+        }
+    }
+
+    @Test
+    void exportUnknownFormat() throws Exception {
+        mockMvc.perform(get("/export?format=xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String export(String url) throws Exception {
+        MvcResult started = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -10,16 +10,20 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
 @AutoConfigureMockMvc
@@ -42,6 +46,41 @@ class PhoneControllerTest {
                 .andExpect(jsonPath("$.code", is(HttpStatus.OK.value())));
     }
 
+    @Test
+    void streamAll() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("streamed phone", "88888888888"));
+        MvcResult started = mockMvc.perform(get("/phones/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("\"name\":\"streamed phone\""));
+        phoneService.deleteById(testPhone.getId());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void addPhonesBulk() throws Exception {
+        User testUser = userService.addUser("test name");
+        String request = "{\"userId\":" + testUser.getId() + ",\"name\":\"bulk phone\",\"number\":\"88888888888\"}\n"
+                + "{\"userId\":-1,\"name\":\"bulk phone\",\"number\":\"88888888888\"}\n"
+                + "{\"userId\":" + testUser.getId() + ",\"name\":\"bulk phone\",\"number\":\"1\"}\n";
+        mockMvc.perform(
+                post("/phones/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(request))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object.imported", is(1)))
+                .andExpect(jsonPath("$.object.failed", is(2)));
+        userService.findById(testUser.getId()).getPhone()
+                .forEach(phone -> phoneService.deleteById(phone.getId()));
+        userService.deleteById(testUser.getId());
+    }
+
     @Test
     void getByIdNotFound() throws Exception {
         mockMvc.perform(get("/phones/-1"))
@@ -64,6 +103,36 @@ class PhoneControllerTest {
         userService.deleteById(testUser.getId());
     }
 
+    @Test
+    void getByIdConditional() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("test name phone", "11111111111"));
+        String etag = mockMvc.perform(get("/phones/" + testPhone.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/phones/" + testPhone.getId()).header(HttpHeaders.IF_NONE_MATCH, "W/" + etag))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+        String updated = mockMvc.perform(
+                patch("/phones/" + testPhone.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"renamed\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(
+                patch("/phones/" + testPhone.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"lost update\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(get("/phones/" + testPhone.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, updated))
+                .andExpect(jsonPath("$.object.name", is("renamed")));
+        userService.deleteById(testUser.getId());
+    }
+
     @Test
     void getByNumberNotFound() throws Exception {
         mockMvc.perform(get("/phones").param("number", "+11111111111"))
@@ -80,6 +149,17 @@ class PhoneControllerTest {
                 .andExpect(jsonPath("$.code", is(HttpStatus.BAD_REQUEST.value())));
     }
 
+    @Test
+    void getByNumberMalformed() throws Exception {
+        for (String number : new String[]{"+7(999)123--4567", "7+9991234567", "(7999)1234567", "79991234567-",
+                "+7 999 123 45 67", "799912345678"}) {
+            mockMvc.perform(get("/phones").param("number", number))
+                    .andDo(print())
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.code", is(HttpStatus.BAD_REQUEST.value())));
+        }
+    }
+
     @Test
     void getByNumberSuccess() throws Exception {
         User testUser = userService.addUser("test name");
@@ -94,6 +174,93 @@ class PhoneControllerTest {
         userService.deleteById(testUser.getId());
     }
 
+    @Test
+    void lookupNumbers() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("phone name", "+7(913)404-18-18"));
+        mockMvc.perform(
+                post("/phones/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"+7(913)000-00-01\", \"89134041818\", \"not a number\"]"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", hasSize(3)))
+                .andExpect(jsonPath("$.response[0]", hasSize(0)))
+                .andExpect(jsonPath("$.response[1][0].id", is(testPhone.getId().intValue())))
+                .andExpect(jsonPath("$.response[2]", hasSize(0)))
+                .andExpect(jsonPath("$.missing", hasSize(2)))
+                .andExpect(jsonPath("$.missing[0]", is("+7(913)000-00-01")))
+                .andExpect(jsonPath("$.missing[1]", is("not a number")));
+        phoneService.deleteById(testPhone.getId());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void lookupNumbersEmpty() throws Exception {
+        mockMvc.perform(
+                post("/phones/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getByNumberAnyFormat() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("phone name", "+7(912)111-22-33"));
+        for (String number : new String[]{"79121112233", "89121112233", "912111-2233", "(912)1112233"}) {
+            mockMvc.perform(get("/phones").param("number", number))
+                    .andDo(print())
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.response[0].number", is(testPhone.getNumber())));
+        }
+        phoneService.deleteById(testPhone.getId());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void getByNumberAfterAdd() throws Exception {
+        mockMvc.perform(get("/phones").param("number", "+7(912)345-67-89"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("phone name", "+7(912)345-67-89"));
+        mockMvc.perform(get("/phones").param("number", "+7(912)345-67-89"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].name", is(testPhone.getName())));
+        mockMvc.perform(get("/caches"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object.numbers.misses", greaterThanOrEqualTo(2)));
+        phoneService.deleteById(testPhone.getId());
+        mockMvc.perform(get("/phones").param("number", "+7(912)345-67-89"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void suggestByPrefix() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone first = phoneService.addPhone(testUser, new PhoneDTO("first", "+7(913)555-00-11"));
+        Phone second = phoneService.addPhone(testUser, new PhoneDTO("second", "8(913)555-00-12"));
+        mockMvc.perform(get("/phones/suggest").param("prefix", "+7 913 555"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response.length()", is(2)))
+                .andExpect(jsonPath("$.response[0].number", is(79135550011L)))
+                .andExpect(jsonPath("$.response[1].id", is(second.getId().intValue())));
+        phoneService.deleteById(first.getId());
+        mockMvc.perform(get("/phones/suggest").param("prefix", "7913555").param("limit", "5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response.length()", is(1)));
+        phoneService.deleteById(second.getId());
+        userService.deleteById(testUser.getId());
+    }
+
     @Test
     void replacePhoneBadRequest() throws Exception {
         PhoneDTO phoneDTO = new PhoneDTO();
@@ -159,4 +326,43 @@ class PhoneControllerTest {
         assertNull(phoneService.findById(testPhone.getId()));
         userService.deleteById(testUser.getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void deletePhonesBulk() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone first = phoneService.addPhone(testUser, new PhoneDTO("first phone", "11111111111"));
+        Phone second = phoneService.addPhone(testUser, new PhoneDTO("second phone", "22222222222"));
+        mockMvc.perform(delete("/phones").param("ids", first.getId() + "," + second.getId() + ",-1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object", is(2)));
+        assertNull(phoneService.findById(first.getId()));
+        assertNull(phoneService.findById(second.getId()));
+        mockMvc.perform(delete("/phones").param("ids", String.valueOf(first.getId())))
+                .andExpect(status().isNotFound());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void patchPhoneSuccess() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("test name phone", "11111111111"));
+        mockMvc.perform(
+                patch("/phones/" + testPhone.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"number\":\"8(333)444-55-66\"}"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object.name", is("test name phone")))
+                .andExpect(jsonPath("$.object.number", is("8(333)444-55-66")));
+        mockMvc.perform(get("/phones").param("number", "+73334445566"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].id", is(testPhone.getId().intValue())));
+        mockMvc.perform(
+                patch("/phones/-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"missing\"}"))
+                .andExpect(status().isNotFound());
+        userService.deleteById(testUser.getId());
+    }
+}
@@ -2,6 +2,7 @@ package com.github.vadim01er.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.github.vadim01er.entity.Phone;
 import com.github.vadim01er.entity.PhoneDTO;
 import com.github.vadim01er.entity.User;
@@ -12,17 +13,21 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @AutoConfigureMockMvc
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -44,6 +49,63 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.code", is(HttpStatus.OK.value())));
     }
 
+    @Test
+    void getAllPaged() throws Exception {
+        User first = userService.addUser("first paged");
+        User second = userService.addUser("second paged");
+        mockMvc.perform(get("/users").param("after", String.valueOf(first.getId() - 1)).param("limit", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].id", is((int) first.getId())))
+                .andExpect(jsonPath("$.next", is((int) first.getId())));
+        mockMvc.perform(get("/users").param("after", String.valueOf(first.getId())).param("limit", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].id", is((int) second.getId())));
+        userService.deleteById(first.getId());
+        userService.deleteById(second.getId());
+    }
+
+    @Test
+    void getAllExpandPhones() throws Exception {
+        User testUser = userService.addUser("expanded user");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("phone name", "88888888888"));
+        String after = String.valueOf(testUser.getId() - 1);
+        mockMvc.perform(get("/users").param("after", after).param("limit", "1"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].name", is(testUser.getName())))
+                .andExpect(jsonPath("$.response[0].phone").doesNotExist());
+        mockMvc.perform(get("/users").param("after", after).param("limit", "1").param("expand", "phones"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].phone[0].number", is(testPhone.getNumber())));
+        phoneService.deleteById(testPhone.getId());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void getAllBadLimit() throws Exception {
+        mockMvc.perform(get("/users").param("limit", "0"))
+                .andDo(print())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is(HttpStatus.BAD_REQUEST.value())));
+    }
+
+    @Test
+    void streamAll() throws Exception {
+        User testUser = userService.addUser("streamed user");
+        MvcResult started = mockMvc.perform(get("/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("\"name\":\"streamed user\""));
+        userService.deleteById(testUser.getId());
+    }
+
     @Test
     void addUserSuccess() throws Exception {
         UserDTO user = new UserDTO("it is test mock");
@@ -63,6 +125,36 @@ class UserControllerTest {
         userService.deleteById(id);
     }
 
+    @Test
+    void addUsersBulk() throws Exception {
+        String request = "[{\"name\":\"bulk json user\"},{\"name\":\"\"},{\"name\":\"bulk json user\"}]";
+        mockMvc.perform(
+                post("/users/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object.received", is(3)))
+                .andExpect(jsonPath("$.object.imported", is(2)))
+                .andExpect(jsonPath("$.object.failed", is(1)))
+                .andExpect(jsonPath("$.object.errors[0].row", is(2)));
+        userService.findByName("bulk json user", false, 0, 1000).forEach(user -> userService.deleteById(user.getId()));
+    }
+
+    @Test
+    void addUsersBulkCsv() throws Exception {
+        mockMvc.perform(
+                post("/users/bulk")
+                        .contentType("text/csv")
+                        .content("name\nbulk csv user\n"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object.imported", is(1)));
+        mockMvc.perform(get("/users").param("name", "bulk csv user"))
+                .andExpect(status().isOk());
+        userService.findByName("bulk csv user", false, 0, 1000).forEach(user -> userService.deleteById(user.getId()));
+    }
+
     @Test
     void addUserBadRequest() throws Exception {
         UserDTO user = new UserDTO();
@@ -95,6 +187,39 @@ class UserControllerTest {
         userService.deleteById(testUser.getId());
     }
 
+    @Test
+    void getByIdCbor() throws Exception {
+        User testUser = userService.addUser("test name");
+        byte[] body = mockMvc.perform(get("/users/" + testUser.getId()).accept(MediaType.APPLICATION_CBOR))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode response = new ObjectMapper(new CBORFactory()).readTree(body);
+        assertEquals(HttpStatus.OK.value(), response.get("code").asInt());
+        assertEquals(testUser.getName(), response.get("object").get("name").asText());
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void getByIds() throws Exception {
+        User first = userService.addUser("first batch");
+        User second = userService.addUser("second batch");
+        userService.findById(second.getId());
+        mockMvc.perform(get("/users").param("ids", second.getId() + ",-1," + first.getId()))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response", hasSize(3)))
+                .andExpect(jsonPath("$.response[0].name", is(second.getName())))
+                .andExpect(jsonPath("$.response[1]", nullValue()))
+                .andExpect(jsonPath("$.response[2].name", is(first.getName())))
+                .andExpect(jsonPath("$.response[2].phone").doesNotExist())
+                .andExpect(jsonPath("$.missing", hasSize(1)))
+                .andExpect(jsonPath("$.missing[0]", is(-1)));
+        userService.deleteById(first.getId());
+        userService.deleteById(second.getId());
+    }
+
     @Test
     void getByNameNotFound() throws Exception {
         mockMvc.perform(get("/users").param("name", "-1"))
@@ -122,6 +247,74 @@ class UserControllerTest {
         userService.deleteById(testUser.getId());
     }
 
+    @Test
+    void getByNameSubstringSuccess() throws Exception {
+        User testUser = userService.addUser("Substring Search Name");
+        mockMvc.perform(get("/users").param("name", "ring sEARCH"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code", is(HttpStatus.OK.value())))
+                .andExpect(jsonPath("$.response[0].name", is(testUser.getName())));
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void getByNamePrefixNotFound() throws Exception {
+        User testUser = userService.addUser("Prefix Search Name");
+        mockMvc.perform(get("/users").param("name", "Search Name").param("prefix", "true"))
+                .andDo(print())
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code", is(HttpStatus.NOT_FOUND.value())));
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void getByNamePages() throws Exception {
+        User first = userService.addUser("paged search name");
+        User second = userService.addUser("paged search name");
+        User third = userService.addUser("paged search name");
+        mockMvc.perform(get("/users").param("name", "paged search").param("limit", "2"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response.length()", is(2)))
+                .andExpect(jsonPath("$.response[0].id", is((int) first.getId())))
+                .andExpect(jsonPath("$.next", is((int) second.getId())));
+        mockMvc.perform(get("/users").param("name", "paged search").param("limit", "2")
+                        .param("after", String.valueOf(second.getId())))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response.length()", is(1)))
+                .andExpect(jsonPath("$.response[0].id", is((int) third.getId())))
+                .andExpect(jsonPath("$.next").doesNotExist());
+        userService.deleteById(first.getId());
+        userService.deleteById(second.getId());
+        userService.deleteById(third.getId());
+    }
+
+    @Test
+    void getByShortNameGoesToTheDatabase() throws Exception {
+        User testUser = userService.addUser("Qz short query");
+        mockMvc.perform(get("/users").param("name", "qZ").param("prefix", "true"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].name", is(testUser.getName())));
+        userService.deleteById(testUser.getId());
+    }
+
+    @Test
+    void getByNameAfterReplace() throws Exception {
+        User testUser = userService.addUser("old indexed name");
+        userService.replaceUser(testUser.getId(), new UserDTO("new indexed name"), null);
+        mockMvc.perform(get("/users").param("name", "old indexed"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/users").param("name", "new ind").param("prefix", "true"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response[0].name", is("new indexed name")));
+        userService.deleteById(testUser.getId());
+    }
+
     @Test
     void getUserPhonesByIdNotFound() throws Exception {
         mockMvc.perform(get("/users/-1/phones"))
@@ -186,6 +379,42 @@ class UserControllerTest {
         userService.deleteById(testUser.getId());
     }
 
+    @Test
+    void getByIdConditional() throws Exception {
+        User testUser = userService.addUser("test name");
+        String etag = mockMvc.perform(get("/users/" + testUser.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/users/" + testUser.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("test name phone", "11111111111"));
+        mockMvc.perform(get("/users/" + testUser.getId() + "/phones").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.object[0].id", is(testPhone.getId().intValue())));
+        mockMvc.perform(
+                put("/users/" + testUser.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDTO("new test name"))))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code", is(HttpStatus.PRECONDITION_FAILED.value())));
+        String current = mockMvc.perform(get("/users/" + testUser.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(
+                put("/users/" + testUser.getId())
+                        .header(HttpHeaders.IF_MATCH, current)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDTO("new test name"))))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.object.name", is("new test name")));
+        userService.deleteById(testUser.getId());
+    }
+
     @Test
     void deleteUserNotFound() throws Exception {
         mockMvc.perform(
@@ -205,6 +434,18 @@ class UserControllerTest {
         assertNull(userService.findById(testUser.getId()));
     }
 
+    @Test
+    void deleteUserWithPhones() throws Exception {
+        User testUser = userService.addUser("test name");
+        Phone testPhone = phoneService.addPhone(testUser, new PhoneDTO("test name phone", "11111111111"));
+        mockMvc.perform(delete("/users/" + testUser.getId()))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code", is(HttpStatus.OK.value())));
+        assertNull(userService.findById(testUser.getId()));
+        assertNull(phoneService.findById(testPhone.getId()));
+    }
+
     @Test
     void saveContactBadRequest() throws Exception {
         User testUser = userService.addUser("it is test mock");
@@ -0,0 +1,86 @@
+package com.github.vadim01er.dedup;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.PhoneDTO;
+import com.github.vadim01er.entity.User;
+import com.github.vadim01er.json.MergeReport;
+import com.github.vadim01er.repository.PhoneRepo;
+import com.github.vadim01er.repository.UserRepo;
+import com.github.vadim01er.service.PhoneService;
+import com.github.vadim01er.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class DuplicateMergerTest {
+
+    @Autowired
+    private DuplicateMerger duplicateMerger;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PhoneService phoneService;
+    @Autowired
+    private UserRepo userRepo;
+    @Autowired
+    private PhoneRepo phoneRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * A live phone write locks the phone and then its user; a merge waiting for the phone must not hold the user.
+     */
+    @Test
+    void locksPhonesBeforeUsers() throws Exception {
+        User first = userService.addUser("duplicate lock order");
+        User second = userService.addUser("Duplicate Lock-Order");
+        Phone phone = phoneService.addPhone(second, new PhoneDTO("home", "89015550404"));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch phoneLocked = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> liveWrite = pool.submit(() -> transaction.executeWithoutResult(status -> {
+                phoneRepo.findLockedByUserIdInOrderById(Collections.singleton(second.getId()));
+                phoneLocked.countDown();
+                pause(200);
+                userRepo.findLockedByIdInOrderById(Collections.singleton(second.getId()));
+            }));
+            assertTrue(phoneLocked.await(5, TimeUnit.SECONDS));
+            Future<MergeReport> merge = pool.submit(() -> duplicateMerger.merge(Collections.singletonList(
+                    Arrays.asList(first.getId(), second.getId())), Collections.emptyList()));
+
+            liveWrite.get(5, TimeUnit.SECONDS);
+            MergeReport report = merge.get(5, TimeUnit.SECONDS);
+            assertEquals(1, report.getUsersMerged());
+            assertEquals(1, report.getPhonesMoved());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals((long) first.getId(),
+                phoneRepo.findRowsByIdIn(Collections.singleton(phone.getId())).get(0).getUserId());
+
+        userService.deleteById(first.getId());
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.vadim01er.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CopyTextTest {
+
+    @Test
+    void decodesRow() {
+        ExportRow row = new ExportRow();
+        CopyText.decode(bytes("7\tИван Петров\t12\thome\t+7 900 123-45-67\n"), row);
+        assertEquals(7, row.userId);
+        assertEquals("Иван Петров", row.userName);
+        assertEquals(12, (long) row.phoneId);
+        assertEquals("home", row.phoneName);
+        assertEquals("+7 900 123-45-67", row.number);
+    }
+
+    @Test
+    void decodesUserWithoutPhones() {
+        ExportRow row = new ExportRow();
+        CopyText.decode(bytes("7\tIvan\t\\N\t\\N\t\\N"), row);
+        assertEquals(7, row.userId);
+        assertNull(row.phoneId);
+        assertNull(row.phoneName);
+        assertNull(row.number);
+    }
+
+    @Test
+    void rejectsMalformedRows() {
+        ExportRow row = new ExportRow();
+        assertThrows(IllegalArgumentException.class, () -> CopyText.decode(bytes("7\tIvan\t12\thome\n"), row));
+        assertThrows(IllegalArgumentException.class,
+                () -> CopyText.decode(bytes("7\tIvan\t12\thome\t123\textra\n"), row));
+        assertThrows(IllegalArgumentException.class,
+                () -> CopyText.decode(bytes("7\tIvan\t12\thome\t123\t\n"), row));
+        assertThrows(IllegalArgumentException.class, () -> CopyText.decode(bytes("\\N\tIvan\t12\thome\t123"), row));
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertEquals("a\\b", field("a\\\\b"));
+        assertEquals("tab\there", field("tab\\there"));
+        assertEquals("line\nbreak\r", field("line\\nbreak\\r"));
+        assertEquals("\b\f\u000B", field("\\b\\f\\v"));
+        assertEquals("A!", field("\\101\\41"));
+        assertEquals("AZ", field("\\x41\\x5a"));
+        assertEquals("x", field("\\x"));
+        assertEquals("q", field("\\q"));
+        assertEquals("end\\", field("end\\"));
+        assertEquals("ё", field("\\xd1\\x91"));
+        assertNull(field("\\N"));
+        assertEquals("\\Nx", field("\\\\Nx"));
+    }
+
+    private static String field(String text) {
+        byte[] line = bytes(text);
+        return CopyText.field(line, 0, line.length);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
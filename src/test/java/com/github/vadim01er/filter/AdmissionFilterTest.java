@@ -0,0 +1,58 @@
+package com.github.vadim01er.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdmissionFilterTest {
+
+    private static final int PERMITS = 2;
+
+    private final AdmissionFilter filter = new AdmissionFilter(PERMITS, 0,
+            request -> request.getRequestURI().endsWith("/changes/events"), new ObjectMapper());
+
+    @Test
+    void subscribersDoNotHoldSlots() throws Exception {
+        for (int i = 0; i < PERMITS * 10; i++) {
+            assertEquals(HttpStatus.OK.value(), perform(async("/changes/events")).getStatus());
+        }
+        assertEquals(HttpStatus.OK.value(), perform(new MockHttpServletRequest("GET", "/users/1")).getStatus());
+    }
+
+    @Test
+    void streamsHoldTheirSlotUntilComplete() throws Exception {
+        MockHttpServletRequest first = async("/users/stream");
+        perform(first);
+        perform(async("/users/stream"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                perform(new MockHttpServletRequest("GET", "/users/1")).getStatus());
+
+        first.getAsyncContext().complete();
+        assertEquals(HttpStatus.OK.value(), perform(new MockHttpServletRequest("GET", "/users/1")).getStatus());
+    }
+
+    private static MockHttpServletRequest async(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (servletRequest, servletResponse) -> {
+            HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+            if (httpRequest.isAsyncSupported()) {
+                httpRequest.startAsync();
+            }
+        };
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.vadim01er.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger awaiting = new AtomicInteger();
+    private final RateLimitFilter filter = new RateLimitFilter(10, 50, 1000, Set.of("a", "b"),
+            request -> "internal".equals(request.getHeader("X-Test")), 5, awaiting::get, clock::get,
+            new ObjectMapper());
+
+    @Test
+    void searchesDrainTheBucketFasterThanLookups() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(HttpStatus.OK.value(), perform(search("a")).getStatus());
+        }
+        MockHttpServletResponse rejected = perform(search("a"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), rejected.getStatus());
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(HttpStatus.OK.value(), perform(search("b")).getStatus());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(HttpStatus.OK.value(), perform(search("a")).getStatus());
+    }
+
+    @Test
+    void unknownKeysShareTheAddressBucket() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(HttpStatus.OK.value(), perform(search("random-" + i)).getStatus());
+        }
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), perform(search("random-5")).getStatus());
+        assertEquals(HttpStatus.OK.value(), perform(search("a")).getStatus());
+    }
+
+    @Test
+    void exemptRequestsAreNotLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest request = search("a");
+            request.addHeader("X-Test", "internal");
+            assertEquals(HttpStatus.OK.value(), perform(request).getStatus());
+        }
+        assertEquals(HttpStatus.OK.value(), perform(search("a")).getStatus());
+    }
+
+    @Test
+    void clientsPastTheCapShareTheOverflowBucket() {
+        RateLimitFilter capped = new RateLimitFilter(10, 50, 2, Set.of(), request -> false, 5, awaiting::get,
+                clock::get, new ObjectMapper());
+        assertEquals(0, capped.acquire("ip:1", 50));
+        assertEquals(0, capped.acquire("ip:2", 50));
+        assertEquals(0, capped.acquire("ip:3", 50));
+        assertTrue(capped.acquire("ip:4", 1) > 0);
+        assertTrue(capped.acquire("ip:1", 1) > 0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(0, capped.acquire("ip:4", 50));
+        assertTrue(capped.acquire("ip:4", 1) > 0);
+        assertEquals(0, capped.acquire("ip:5", 50));
+    }
+
+    @Test
+    void shedsWhenConnectionsAreAwaited() throws Exception {
+        awaiting.set(5);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/1");
+        MockHttpServletResponse response = perform(request);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    private MockHttpServletRequest search(String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.setParameter("name", "test");
+        request.addHeader(RateLimitFilter.API_KEY, apiKey);
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
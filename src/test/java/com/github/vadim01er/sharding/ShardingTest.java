@@ -0,0 +1,120 @@
+package com.github.vadim01er.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardingTest {
+
+    private static final long CLOSED_UP_TO = 3L << ShardMap.CHUNK_BITS;
+
+    @Test
+    void connectionsGoToBoundShard() {
+        try (ShardRoutingDataSource routing = routing("routing", 2)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(routing);
+            assertEquals("shard-0", jdbcTemplate.queryForObject("select name from node", String.class));
+            assertEquals("shard-1", ShardContext.call(1, () ->
+                    jdbcTemplate.queryForObject("select name from node", String.class)));
+            assertFalse(ShardContext.isBound());
+        }
+    }
+
+    @Test
+    void movedChunkTakesItsPhonesAlong() {
+        try (ShardRoutingDataSource routing = routing("move", 2);
+             ShardMap shardMap = new ShardMap(2, routing.shard(0), 60_000)) {
+            JdbcTemplate source = new JdbcTemplate(routing.shard(0));
+            JdbcTemplate target = new JdbcTemplate(routing.shard(1));
+            addUser(source, 1, 10);
+            addUser(source, 2, 11);
+            addUser(source, CLOSED_UP_TO + 1, 12);
+
+            ShardRebalancer rebalancer = new ShardRebalancer(shardMap, routing, 0);
+            assertEquals(2, rebalancer.move(0, 1));
+
+            assertEquals(1, shardMap.shardOf(1));
+            assertEquals(0, shardMap.shardOf(CLOSED_UP_TO + 1));
+            assertFalse(shardMap.isMovingAny());
+            assertEquals(Arrays.asList(1L, 2L), target.queryForList("select user_id from users order by user_id",
+                    Long.class));
+            assertEquals(Arrays.asList(10L, 11L), target.queryForList("select phone_id from phone order by phone_id",
+                    Long.class));
+            assertEquals(1, source.queryForObject("select count(*) from users", Integer.class));
+            assertEquals(1, source.queryForObject("select count(*) from phone", Integer.class));
+            assertThrows(IllegalArgumentException.class, () -> rebalancer.move(3, 1));
+        }
+    }
+
+    @Test
+    void mergeKeepsOnlyRowsOfTheOwningShard() {
+        try (ShardRoutingDataSource routing = routing("merge", 2);
+             ShardMap shardMap = new ShardMap(2, routing.shard(0), 60_000)) {
+            JdbcTemplate shard0 = new JdbcTemplate(routing.shard(0));
+            JdbcTemplate shard1 = new JdbcTemplate(routing.shard(1));
+            addUser(shard0, 1, 10);
+            addUser(shard0, 3, 11);
+            addUser(shard1, ShardMap.base(1) + 1, ShardMap.base(1) + 10);
+            addUser(shard1, ShardMap.base(1) + 2, ShardMap.base(1) + 11);
+            addUser(shard1, 1, 10);
+
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+            DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+            beanFactory.registerSingleton("shardMap", shardMap);
+            ShardRouter router = new ShardRouter(beanFactory.getBeanProvider(ShardMap.class),
+                    new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource), 2);
+            try {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+                List<Long> page = router.merge(() -> jdbcTemplate.queryForList(
+                        "select user_id from users order by user_id limit 3", Long.class),
+                        Long::longValue, Comparator.naturalOrder(), 3);
+                assertEquals(Arrays.asList(1L, 3L, ShardMap.base(1) + 1), page);
+                assertEquals(1, router.shardOfPhone(ShardMap.base(1) + 11));
+
+                List<Long> partitioned = router.partition(Arrays.asList(3L, ShardMap.base(1) + 2, 1L),
+                        ids -> new ArrayList<>(Arrays.asList((long) ShardContext.current())));
+                assertEquals(Arrays.asList(0L, 1L), partitioned);
+            } finally {
+                router.shutdown();
+            }
+        }
+    }
+
+    private static void addUser(JdbcTemplate jdbcTemplate, long userId, long phoneId) {
+        jdbcTemplate.update("insert into users (user_id, name) values (?, ?)", userId, "user " + userId);
+        jdbcTemplate.update("insert into phone (phone_id, user_id, number) values (?, ?, ?)",
+                phoneId, userId, "+7900" + phoneId);
+    }
+
+    private static ShardRoutingDataSource routing(String name, int shards) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "-" + shard + ";DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPoolName("shard-" + shard);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("create table if not exists node (name varchar(16))");
+            jdbcTemplate.update("insert into node values (?)", "shard-" + shard);
+            jdbcTemplate.execute("create table users (user_id bigint primary key, name varchar(255))");
+            jdbcTemplate.execute("create table phone (phone_id bigint primary key, "
+                    + "user_id bigint not null references users (user_id), number varchar(32))");
+            jdbcTemplate.execute("create sequence users_seq start with "
+                    + Math.max(ShardMap.base(shard) + 50, CLOSED_UP_TO) + " increment by 50");
+            pools.add(dataSource);
+        }
+        return new ShardRoutingDataSource(pools);
+    }
+}
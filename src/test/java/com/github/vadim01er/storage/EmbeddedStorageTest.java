@@ -0,0 +1,90 @@
+package com.github.vadim01er.storage;
+
+import com.github.vadim01er.entity.Phone;
+import com.github.vadim01er.entity.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedStorageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversFromSnapshotAndLog() throws Exception {
+        MemoryPhoneBook book = new MemoryPhoneBook();
+        WriteAheadLog wal = WriteAheadLog.open(dir.resolve("wal"), mutation -> { });
+        apply(book, wal, Arrays.asList(
+                Mutation.userUpsert(1, 1, 0, "Ivan"),
+                Mutation.phoneUpsert(2, 10, 1, 0, 79001234567L, "home", "+7 900 123-45-67"),
+                Mutation.phoneUpsert(3, 11, 1, 0, 79007654321L, "work", "8 900 765 43 21")));
+        SnapshotFile.write(dir.resolve("snapshot"), book, 3);
+        wal.reset();
+        apply(book, wal, Arrays.asList(
+                Mutation.userUpsert(4, 2, 0, "Petr"),
+                Mutation.phoneUpsert(5, 11, 2, 1, 79007654321L, "work", "8 900 765 43 21"),
+                Mutation.delete(Mutation.Kind.PHONE_DELETE, 6, 10)));
+        wal.close();
+
+        MemoryPhoneBook recovered = new MemoryPhoneBook();
+        long token = SnapshotFile.read(dir.resolve("snapshot"), recovered);
+        List<Mutation> replayed = new ArrayList<>();
+        WriteAheadLog.open(dir.resolve("wal"), replayed::add).close();
+        recovered.apply(replayed);
+
+        assertEquals(3, token);
+        assertEquals(3, replayed.size());
+        assertEquals(2, recovered.userCount());
+        assertEquals(1, recovered.phoneCount());
+        assertTrue(recovered.user(1).getPhone().isEmpty());
+        User petr = recovered.user(2);
+        assertEquals("Petr", petr.getName());
+        assertEquals(1, petr.getPhone().size());
+        assertNull(recovered.phoneById(10));
+        assertTrue(recovered.phonesByNumber(79001234567L).isEmpty());
+        List<Phone> work = recovered.phonesByNumber(79007654321L);
+        assertEquals(1, work.size());
+        assertEquals(11L, work.get(0).getId());
+        assertEquals(1, work.get(0).getVersion());
+    }
+
+    @Test
+    void dropsTornLogTail() throws Exception {
+        Path path = dir.resolve("wal");
+        WriteAheadLog wal = WriteAheadLog.open(path, mutation -> { });
+        wal.append(Collections.singletonList(Mutation.userUpsert(1, 1, 0, "Ivan")));
+        wal.append(Collections.singletonList(Mutation.userUpsert(2, 2, 0, "Petr")));
+        long size = wal.size();
+        wal.close();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        List<Mutation> replayed = new ArrayList<>();
+        wal = WriteAheadLog.open(path, replayed::add);
+        assertEquals(1, replayed.size());
+        assertEquals("Ivan", replayed.get(0).getName());
+        wal.append(Collections.singletonList(Mutation.userUpsert(3, 3, 0, "Olga")));
+        wal.close();
+
+        replayed.clear();
+        WriteAheadLog.open(path, replayed::add).close();
+        assertEquals(2, replayed.size());
+        assertEquals("Olga", replayed.get(1).getName());
+    }
+
+    private static void apply(MemoryPhoneBook book, WriteAheadLog wal, List<Mutation> mutations) throws Exception {
+        wal.append(mutations);
+        book.apply(mutations);
+    }
+}